@@ -6,6 +6,13 @@ public class DemoMyGenericArrayList {
     public static void main(String[] args) {
         // Create a list
         MyGenericArrayList<String> list = new MyGenericArrayList<>();
+        //the list itself doesn't print anything, this shows when it replaces its internal array
+        list.setResizeListener((oldCapacity, newCapacity, size) ->
+                System.out.println("\nFOR DEMONSTRATION: " + (newCapacity > oldCapacity ? "increasing" : "decreasing")
+                        + " internal capacity."
+                        + " \n Old Capacity = " + oldCapacity
+                        + " \n New Capacity = " + newCapacity
+                        + " \n Size = " + size + "\n"));
         
         // Add elements to the list
         list.add("Strawberry"); // Add Strawberry to the end of the list
@@ -47,5 +54,7 @@ public class DemoMyGenericArrayList {
         System.out.print("-10- ");
         for (String s: list)
             System.out.print(s.toUpperCase() + " ");
+        System.out.println();
+        System.out.println("-11- " + list.metrics());
     }
 }
\ No newline at end of file
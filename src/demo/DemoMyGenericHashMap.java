@@ -42,6 +42,16 @@ public class DemoMyGenericHashMap {
     map.remove("John");
     System.out.println("All employees from the map: " + map);
   
+    System.out.println("Increasing everyone's age by one, and removing everyone older than 50...");
+    MyGenericHashMap<String, Integer>.MyCursor cursor = map.cursor();
+    while (cursor.advance()) {
+      if (cursor.value() > 50)
+        cursor.remove();
+      else
+        cursor.setValue(cursor.value() + 1);
+    }
+    System.out.println("All employees from the map: " + map);
+  
     System.out.println("Clearing the map...");
     map.clear();
     System.out.println("Employees in the map after clearing: " + map);
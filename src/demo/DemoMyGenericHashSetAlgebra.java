@@ -0,0 +1,56 @@
+package demo;
+
+import mydatastructures.MyGenericHashSet;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Benchmarks union/intersect/difference/containsAll of two large sets,
+ * running them with 1, 2, 4... threads (up to the number of cores) to show how they scale
+ */
+public class DemoMyGenericHashSetAlgebra {
+    
+    private static final int SIZE = 2_000_000;
+    private static final int ROUNDS = 5;
+    
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        Random random = new Random(42);
+        MyGenericHashSet<Integer> a = new MyGenericHashSet<>();
+        MyGenericHashSet<Integer> b = new MyGenericHashSet<>();
+        // about half of the elements are in both sets
+        for (int i = 0; i < SIZE; i++) {
+            a.add(random.nextInt(SIZE * 3));
+            b.add(random.nextInt(SIZE * 3));
+        }
+        System.out.println("Set a: " + a.size() + " elements, set b: " + b.size() + " elements");
+        
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%-8s %12s %12s %12s %12s%n", "threads", "union ms", "intersect ms", "difference ms", "containsAll ms");
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            //the parallel work of the set operations runs in the pool of the calling task
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            double union = pool.submit(() -> time(() -> a.union(b))).get();
+            double intersect = pool.submit(() -> time(() -> a.intersect(b))).get();
+            double difference = pool.submit(() -> time(() -> a.difference(b))).get();
+            double containsAll = pool.submit(() -> time(() -> a.containsAll(a))).get();
+            pool.shutdown();
+            System.out.printf("%-8d %12.1f %12.1f %12.1f %12.1f%n", threads, union, intersect, difference, containsAll);
+        }
+    }
+    
+    /**
+     * Returns: The best time (in milliseconds) out of a few runs of the operation
+     */
+    private static double time(Supplier<?> operation) {
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            operation.get();
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        return best;
+    }
+}
\ No newline at end of file
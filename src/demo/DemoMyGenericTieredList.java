@@ -0,0 +1,65 @@
+package demo;
+
+import mydatastructures.MyGenericArrayList;
+import mydatastructures.MyGenericLinkedList;
+import mydatastructures.MyGenericTieredList;
+
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+/**
+ * Compares MyGenericTieredList with MyGenericArrayList and MyGenericLinkedList on a large list:
+ * inserting and removing at random positions, and reading random positions.
+ * Prints the average time of one operation in nanoseconds
+ */
+public class DemoMyGenericTieredList {
+    
+    private static final int SIZE = 1_000_000;
+    private static final int OPERATIONS = 20_000;
+    //walking to the middle of a linked list of a million nodes takes around a millisecond, so it gets fewer operations
+    private static final int LINKED_LIST_OPERATIONS = 200;
+    
+    //the values read by get() are added up here, so the JIT can't skip the reads
+    private static long sink;
+    
+    public static void main(String[] args) {
+        MyGenericArrayList<Integer> arrayList = new MyGenericArrayList<>();
+        MyGenericLinkedList<Integer> linkedList = new MyGenericLinkedList<>();
+        MyGenericTieredList<Integer> tieredList = new MyGenericTieredList<>();
+        for (int i = 0; i < SIZE; i++) {
+            arrayList.add(i);
+            linkedList.addLast(i);
+            tieredList.add(i);
+        }
+        
+        System.out.printf("%-22s %14s %14s %14s%n", "ns per operation", "insert", "remove", "get");
+        //run twice, the first round lets the JIT compile the code
+        for (int round = 0; round < 2; round++) {
+            System.out.printf("%-22s %14.0f %14.0f %14.0f%n", "MyGenericArrayList",
+                    measure(OPERATIONS, i -> arrayList.add(i, i)),
+                    measure(OPERATIONS, arrayList::remove),
+                    measure(OPERATIONS, i -> sink += arrayList.get(i)));
+            System.out.printf("%-22s %14.0f %14.0f %14.0f%n", "MyGenericLinkedList",
+                    measure(LINKED_LIST_OPERATIONS, i -> linkedList.add(i, i)),
+                    measure(LINKED_LIST_OPERATIONS, linkedList::remove),
+                    measure(LINKED_LIST_OPERATIONS, i -> sink += linkedList.get(i)));
+            System.out.printf("%-22s %14.0f %14.0f %14.0f%n", "MyGenericTieredList",
+                    measure(OPERATIONS, i -> tieredList.add(i, i)),
+                    measure(OPERATIONS, tieredList::remove),
+                    measure(OPERATIONS, i -> sink += tieredList.get(i)));
+        }
+        System.out.println("(" + sink + ")");
+    }
+    
+    /**
+     * Returns: The average time in nanoseconds of running the operation on random indexes of the list
+     * (the list has about SIZE elements before and after, because inserts and removes are run in equal numbers)
+     */
+    private static double measure(int operations, IntConsumer operation) {
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++)
+            operation.accept(random.nextInt(SIZE - operations));
+        return (double) (System.nanoTime() - start) / operations;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,62 @@
+package demo;
+
+import mydatastructures.MyDoubleArrayList;
+import mydatastructures.MyGenericArrayList;
+import mydatastructures.MyIntArrayList;
+
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Compares scanning a MyGenericArrayList<Integer> with the primitive MyIntArrayList and MyDoubleArrayList,
+ * printing how many bytes of values per second each one gets through
+ */
+public class DemoMyPrimitiveArrayList {
+    
+    private static final int SIZE = 10_000_000;
+    private static final int ROUNDS = 10;
+    
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        int[] values = new int[SIZE];
+        double[] doubles = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            values[i] = random.nextInt(1000);
+            doubles[i] = values[i];
+        }
+        
+        MyIntArrayList ints = new MyIntArrayList(values);
+        MyDoubleArrayList primitiveDoubles = new MyDoubleArrayList(doubles);
+        MyGenericArrayList<Integer> boxed = new MyGenericArrayList<>();
+        for (int value : values)
+            boxed.add(value);
+        
+        System.out.printf("%-34s %10s %10s%n", "", "ms", "GB/s");
+        measure("MyGenericArrayList<Integer> sum", () -> {
+            long sum = 0;
+            for (int value : boxed)
+                sum += value;
+            return sum;
+        }, 4);
+        measure("MyIntArrayList.sum()", ints::sum, Integer.BYTES);
+        measure("MyIntArrayList.max()", ints::max, Integer.BYTES);
+        measure("MyIntArrayList.indexOf() (missing)", () -> ints.indexOf(-1), Integer.BYTES);
+        measure("MyDoubleArrayList.sum()", () -> (long) primitiveDoubles.sum(), Double.BYTES);
+    }
+    
+    /**
+     * Prints the best time out of a few runs, and the bandwidth based on bytesPerValue
+     * (for the boxed list that only counts the int inside each Integer, not the reference or the object header)
+     */
+    private static void measure(String name, LongSupplier scan, int bytesPerValue) {
+        double best = Double.MAX_VALUE;
+        long check = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            check += scan.getAsLong();
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        //printing the results makes sure the JIT can't skip the scans
+        System.out.printf("%-34s %10.2f %10.2f   (%d)%n", name, best, (double) SIZE * bytesPerValue / best / 1e6, check);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,392 @@
+package mydatastructures;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A list of fixed width records that lives outside of the Java heap, and is indexed by long,
+ * so it isn't limited to 2^31 elements (or to the size of the heap) like MyGenericArrayList.
+ * The records are turned into bytes by the provided codec, and only decoded when they are read,
+ * so the garbage collector never has to look at them: a list of billions of records costs it no more than an empty one.
+ * The bytes are kept either in direct (off-heap) memory, or in a memory mapped file, in which case the list is still
+ * there when the file is opened again (after a restart, for example).
+ * slice() returns a view of a part of the list without copying anything.
+ */
+//The records are stored in chunks of at most CHUNK_BYTES (a single ByteBuffer can't be larger than 2GB),
+// every chunk holds the same power of two of records, so record i is in chunk i >>> chunkShift at position (i & chunkMask) * width.
+//Only the last chunk starts small and doubles as needed, so a small list doesn't take a whole chunk.
+// In a file, chunk c always starts at HEADER_SIZE + (c << chunkShift) * width, however much of it is mapped.
+//This class is not thread safe, and changes reach the disk when the operating system decides so (or on force()/close())
+public class MyBigRecordList<T> implements Iterable<T>, Closeable {
+    
+    private static final long CHUNK_BYTES = 1 << 30;
+    // records in the first chunk of a new list, it doubles from there up to a full chunk
+    private static final int INITIAL_RECORDS = 16;
+    
+    // The file starts with a header that describes the list, the records follow right after it
+    private static final int MAGIC = 0x4D59524C; // "MYRL" (record list)
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_POSITION = 0;
+    private static final int VERSION_POSITION = 4;
+    private static final int WIDTH_POSITION = 8;
+    private static final int SIZE_POSITION = 16;
+    
+    private final MyCodec<T> codec;
+    private final int width;
+    private final int chunkShift;
+    private final long chunkMask;
+    
+    // null for a list in direct memory
+    private final Path file;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    
+    // null once the list is closed
+    private ByteBuffer[] chunks;
+    private int chunkCount = 0;
+    // number of records the last chunk has room for (all other chunks are full size)
+    private int lastChunkRecords = 0;
+    private long size = 0;
+    
+    /**
+     * Constructs an empty list in direct memory (outside of the heap, freed when the list is closed or garbage collected)
+     */
+    public MyBigRecordList(MyCodec<T> codec) {
+        this.codec = codec;
+        this.width = checkWidth(codec);
+        this.chunkShift = chunkShiftFor(width);
+        this.chunkMask = (1L << chunkShift) - 1;
+        this.file = null;
+        this.chunks = new ByteBuffer[4];
+    }
+    
+    /**
+     * Opens the list stored in the provided file, or creates a new empty list in it if the file doesn't exist
+     * Throws: IllegalArgumentException if the existing list was created with a codec of a different width
+     */
+    public MyBigRecordList(Path file, MyCodec<T> codec) throws IOException {
+        this.codec = codec;
+        this.width = checkWidth(codec);
+        this.chunkShift = chunkShiftFor(width);
+        this.chunkMask = (1L << chunkShift) - 1;
+        this.file = file;
+        this.chunks = new ByteBuffer[4];
+        
+        boolean exists = Files.exists(file) && Files.size(file) > 0;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        
+        if (exists) {
+            if (header.getInt(MAGIC_POSITION) != MAGIC || header.getInt(VERSION_POSITION) != VERSION) {
+                channel.close();
+                throw new IOException("Not a MyBigRecordList file: " + file);
+            }
+            if (header.getInt(WIDTH_POSITION) != width) {
+                channel.close();
+                throw new IllegalArgumentException("The list in " + file + " was created with a different codec");
+            }
+            //map the full chunks, and the last one with room for the records it already holds
+            long storedSize = header.getLong(SIZE_POSITION);
+            while (capacity() < storedSize)
+                growLastChunk();
+            size = storedSize;
+        } else {
+            header.putInt(MAGIC_POSITION, MAGIC);
+            header.putInt(VERSION_POSITION, VERSION);
+            header.putInt(WIDTH_POSITION, width);
+            header.putLong(SIZE_POSITION, 0);
+        }
+    }
+    
+    private static int checkWidth(MyCodec<?> codec) {
+        int width = codec.width();
+        if (width < 1 || width > CHUNK_BYTES)
+            throw new IllegalArgumentException("Record width must be between 1 and " + CHUNK_BYTES + " bytes: " + width);
+        return width;
+    }
+    
+    private static int chunkShiftFor(int width) {
+        return Long.numberOfTrailingZeros(Long.highestOneBit(CHUNK_BYTES / width));
+    }
+    
+    /** Returns: The number of records there is room for without growing */
+    private long capacity() {
+        return chunkCount == 0 ? 0 : ((long) (chunkCount - 1) << chunkShift) + lastChunkRecords;
+    }
+    
+    /**
+     * Makes room for more records: doubles the last chunk, or starts a new one if the last chunk is full size
+     */
+    private void growLastChunk() {
+        int recordsPerChunk = 1 << chunkShift;
+        int index;
+        int records;
+        if (chunkCount > 0 && lastChunkRecords < recordsPerChunk) {
+            index = chunkCount - 1;
+            records = Math.min(recordsPerChunk, lastChunkRecords * 2);
+        } else {
+            if (chunkCount == chunks.length)
+                chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            index = chunkCount++;
+            records = Math.min(recordsPerChunk, INITIAL_RECORDS);
+        }
+        ByteBuffer old = chunks[index];
+        if (file == null) {
+            //direct memory can't be extended, the (at most one chunk of) records are copied into a larger buffer
+            ByteBuffer chunk = ByteBuffer.allocateDirect(records * width);
+            if (old != null) {
+                ByteBuffer source = old.duplicate();
+                source.clear();
+                chunk.put(source);
+                chunk.clear();
+            }
+            chunks[index] = chunk;
+        } else {
+            //in a file the chunk is just mapped again with a larger size, nothing is copied
+            // (the file grows as needed, the new part of the file is filled with zeros)
+            try {
+                chunks[index] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_SIZE + ((long) index << chunkShift) * width, (long) records * width);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        lastChunkRecords = records;
+    }
+    
+    private ByteBuffer chunkOf(long index) {
+        return chunks[(int) (index >>> chunkShift)];
+    }
+    
+    /**
+     * Returns: The position of the record in its chunk
+     */
+    private int positionOf(long index) {
+        return (int) (index & chunkMask) * width;
+    }
+    
+    private void checkIndex(long index) {
+        ensureOpen();
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException
+                    ("Index: " + index + ", Size: " + size);
+    }
+    
+    private void writeSize() {
+        if (header != null)
+            header.putLong(SIZE_POSITION, size);
+    }
+    
+    /** Adds a new record to the end of the list */
+    //Runtime complexity: O(1) (Amortized), only the last chunk (at most 1GB) is ever copied
+    public void add(T e) {
+        ensureOpen();
+        Objects.requireNonNull(e, "MyBigRecordList does not support null records");
+        if (size == capacity())
+            growLastChunk();
+        codec.write(chunkOf(size), positionOf(size), e);
+        size++;
+        writeSize();
+    }
+    
+    /** Returns: the record at the specified index (decoded from its bytes, so a new object every time) */
+    //Runtime complexity: O(1)
+    public T get(long index) {
+        checkIndex(index);
+        return codec.read(chunkOf(index), positionOf(index));
+    }
+    
+    /** Replaces the record at the specified index with the specified record.
+     * Returns: the record that was previously on the specified index */
+    //Runtime complexity: O(1)
+    public T set(long index, T e) {
+        checkIndex(index);
+        Objects.requireNonNull(e, "MyBigRecordList does not support null records");
+        ByteBuffer chunk = chunkOf(index);
+        int position = positionOf(index);
+        T temp = codec.read(chunk, position);
+        codec.write(chunk, position, e);
+        return temp;
+    }
+    
+    /** Removes the last record
+     * Returns: The record that was removed
+     * Throws: NoSuchElementException if the list is empty */
+    //Runtime complexity: O(1), records are only removed from the end, shifting billions of records would take minutes
+    public T removeLast() {
+        ensureOpen();
+        if (size == 0)
+            throw new NoSuchElementException("List is empty");
+        T removed = codec.read(chunkOf(size - 1), positionOf(size - 1));
+        size--;
+        writeSize();
+        return removed;
+    }
+    
+    /** Removes all records (the memory, or the file, keeps its size and is reused by the next records) */
+    public void clear() {
+        ensureOpen();
+        size = 0;
+        writeSize();
+    }
+    
+    /** Returns: Count of records in the list */
+    public long size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /** Returns: A view of the records from index 'from' (inclusive) to index 'to' (exclusive), backed by this list
+     * Changes made through the view are made to the list, and the other way around. Nothing is copied */
+    public Slice slice(long from, long to) {
+        ensureOpen();
+        if (from < 0 || to > size || from > to)
+            throw new IndexOutOfBoundsException
+                    ("From: " + from + ", To: " + to + ", Size: " + size);
+        return new Slice(from, to - from);
+    }
+    
+    /**
+     * A part of a MyBigRecordList, with its own indexes starting from 0.
+     * A slice has a fixed size, if the list gets shorter than the end of the slice, its last records can't be read any more
+     */
+    public class Slice implements Iterable<T> {
+        private final long offset;
+        private final long length;
+        
+        private Slice(long offset, long length) {
+            this.offset = offset;
+            this.length = length;
+        }
+        
+        private void checkIndex(long index) {
+            if (index < 0 || index >= length)
+                throw new IndexOutOfBoundsException
+                        ("Index: " + index + ", Size: " + length);
+        }
+        
+        /** Returns: the record at the specified index of the slice */
+        public T get(long index) {
+            checkIndex(index);
+            return MyBigRecordList.this.get(offset + index);
+        }
+        
+        /** Replaces the record at the specified index of the slice with the specified record.
+         * Returns: the record that was previously on the specified index */
+        public T set(long index, T e) {
+            checkIndex(index);
+            return MyBigRecordList.this.set(offset + index, e);
+        }
+        
+        /** Returns: Count of records in the slice */
+        public long size() {
+            return length;
+        }
+        
+        /** Returns: A view of a part of this slice, from index 'from' (inclusive) to index 'to' (exclusive) */
+        public Slice slice(long from, long to) {
+            if (from < 0 || to > length || from > to)
+                throw new IndexOutOfBoundsException
+                        ("From: " + from + ", To: " + to + ", Size: " + length);
+            return new Slice(offset + from, to - from);
+        }
+        
+        @Override
+        public Iterator<T> iterator() {
+            return new MyBigRecordListIterator(offset, offset + length);
+        }
+    }
+    
+    @Override
+    public Iterator<T> iterator() {
+        return new MyBigRecordListIterator(0, size);
+    }
+    
+    private class MyBigRecordListIterator implements Iterator<T> {
+        
+        private long currentIndex;
+        private final long end;
+        
+        MyBigRecordListIterator(long start, long end) {
+            this.currentIndex = start;
+            this.end = end;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return currentIndex < end;
+        }
+        
+        @Override
+        public T next() {
+            if (currentIndex >= end)
+                throw new NoSuchElementException();
+            return get(currentIndex++);
+        }
+    }
+    
+    /**
+     * Makes sure every change made so far is written to the disk (does nothing for a list in direct memory)
+     */
+    public void force() {
+        ensureOpen();
+        if (file == null)
+            return;
+        header.force();
+        for (int i = 0; i < chunkCount; i++)
+            ((MappedByteBuffer) chunks[i]).force();
+    }
+    
+    /**
+     * Writes every change to the disk and closes the file (or lets go of the direct memory), the list can't be used after this
+     */
+    @Override
+    public void close() throws IOException {
+        if (chunks == null)
+            return;
+        force();
+        if (channel != null)
+            channel.close();
+        channel = null;
+        header = null;
+        chunks = null;
+    }
+    
+    private void ensureOpen() {
+        if (chunks == null)
+            throw new IllegalStateException("The list is closed");
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        
+        for (T e : this) {
+            sb.append(e);
+            sb.append(", ");
+        }
+        //delete the comma and space after the last record
+        if (sb.length() > 2) {
+            sb.deleteCharAt(sb.length() - 1);
+            sb.deleteCharAt(sb.length() - 1);
+        }
+        
+        sb.append("]");
+        return sb.toString();
+    }
+}
\ No newline at end of file
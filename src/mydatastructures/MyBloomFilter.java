@@ -0,0 +1,192 @@
+package mydatastructures;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A Bloom filter, a compact structure that can tell for sure that an element was never added to it,
+ * but may wrongly report that an element was added (with a configurable probability, the false positive rate).
+ * Elements can't be removed, and the elements themselves are not stored, only a few bits for each.
+ * This one is "blocked": all bits of an element are set in the same block of 512 bits (64 bytes, one cache line),
+ * so checking an element reads a single block instead of k random places of the whole bit array.
+ * The price is a slightly higher false positive rate than a plain Bloom filter of the same size.
+ */
+//The filter only looks at the elements' hashCode(), so a filter that is sent to another process (toByteArray())
+// only works there if the elements' hash codes are the same in both processes (true for String, Integer, Long... but not for Object's default hashCode())
+public class MyBloomFilter<E> {
+    
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int BLOCK_BITS = WORDS_PER_BLOCK * Long.SIZE;
+    // first 4 bytes of the serialized form, so random bytes are not mistaken for a filter
+    private static final int MAGIC = 0x4D59424C;
+    // magic, hashCount, blockCount and expectedElements, followed by the bits
+    private static final int HEADER_BYTES = 3 * Integer.BYTES + Long.BYTES;
+    private static final int MAX_BLOCKS = Integer.MAX_VALUE / WORDS_PER_BLOCK;
+    // the largest array the JVM can reliably allocate, a larger filter can't be turned into a byte[]
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    
+    // block b is made of words[b * 8] .. words[b * 8 + 7]
+    private final long[] words;
+    private final int blockCount;
+    // number of bits set (and checked) per element
+    private final int hashCount;
+    // the number of elements the filter was sized for
+    private final long expectedElements;
+    // number of add() calls, the hash map and set rebuild their filter once it got a lot more than it was sized for
+    private long additions = 0;
+    
+    /**
+     * Constructs a filter big enough to hold the expected number of elements with the desired false positive rate
+     * (between 0 and 1, for example 0.01 for 1%)
+     */
+    public MyBloomFilter(long expectedElements, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        long elements = Math.max(1, expectedElements);
+        //optimal size of a plain Bloom filter: m = -n * ln(p) / ln(2)^2 bits, and k = m / n * ln(2) hash functions
+        double bits = -elements * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.blockCount = (int) Math.max(1, Math.min(MAX_BLOCKS, Math.ceil(bits / BLOCK_BITS)));
+        this.hashCount = (int) Math.max(1, Math.min(BLOCK_BITS / 8, Math.round(bits / elements * Math.log(2))));
+        this.words = new long[blockCount * WORDS_PER_BLOCK];
+        this.expectedElements = elements;
+    }
+    
+    private MyBloomFilter(long[] words, int blockCount, int hashCount, long expectedElements) {
+        this.words = words;
+        this.blockCount = blockCount;
+        this.hashCount = hashCount;
+        this.expectedElements = expectedElements;
+    }
+    
+    /**
+     * Adds the element to the filter
+     */
+    public void add(E e) {
+        addHash(Objects.hashCode(e));
+    }
+    
+    /**
+     * Returns: false if the element was definitely never added to the filter,
+     * true if it probably was
+     */
+    public boolean mightContain(E e) {
+        return mightContainHash(Objects.hashCode(e));
+    }
+    
+    //A hash code has only 32 bits, so it's first spread over 64 bits (the finalizer of the MurmurHash3 algorithm).
+    // The upper half picks the block, the lower half is mixed again to get the positions inside the block
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+    
+    private int blockOf(long hash) {
+        //maps the upper 32 bits to 0..blockCount-1 without the % operator (and without requiring a power of two)
+        return (int) (((hash >>> 32) * blockCount) >>> 32);
+    }
+    
+    /**
+     * Adds an element with the provided hash code (used by the hash map and the hash set, which already know it)
+     */
+    void addHash(int hashCode) {
+        additions++;
+        long hash = mix(hashCode);
+        int base = blockOf(hash) * WORDS_PER_BLOCK;
+        long positions = mix(hash);
+        //position i is (a + i * b) inside the block, b is odd so all positions are different
+        int a = (int) positions, b = (int) (positions >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (a + i * b) & (BLOCK_BITS - 1);
+            words[base + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+    
+    boolean mightContainHash(int hashCode) {
+        long hash = mix(hashCode);
+        int base = blockOf(hash) * WORDS_PER_BLOCK;
+        long positions = mix(hash);
+        int a = (int) positions, b = (int) (positions >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (a + i * b) & (BLOCK_BITS - 1);
+            if ((words[base + (bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Removes all elements from the filter
+     */
+    public void clear() {
+        Arrays.fill(words, 0);
+        additions = 0;
+    }
+    
+    /**
+     * Returns: The number of bits of the filter
+     */
+    public long bitSize() {
+        return (long) words.length * Long.SIZE;
+    }
+    
+    /**
+     * Returns: The number of elements the filter was sized for, adding more makes false positives more likely
+     */
+    public long expectedElements() {
+        return expectedElements;
+    }
+    
+    /**
+     * Returns: true if a lot more elements were added than the filter was sized for (elements that were removed from
+     * a hash map or set still count, since their bits can't be cleared)
+     */
+    //Half again as many elements as it was sized for roughly multiplies the false positive rate by 5 (1% becomes 5%),
+    // after a rebuild at least that many elements have to be added before the next one, so rebuilding costs O(1) per add
+    boolean isOverfilled() {
+        return additions > expectedElements + expectedElements / 2;
+    }
+    
+    /**
+     * Returns: The number of bits set for each element
+     */
+    public int hashCount() {
+        return hashCount;
+    }
+    
+    /**
+     * Returns: The filter as bytes, which can be turned back into an equal filter with fromByteArray()
+     * Throws: IllegalStateException if the filter is larger than the largest possible byte array (about 2GB)
+     */
+    public byte[] toByteArray() {
+        //calculated in long, a filter of more than 2GB would overflow an int
+        long bytes = HEADER_BYTES + (long) words.length * Long.BYTES;
+        if (bytes > MAX_ARRAY_SIZE)
+            throw new IllegalStateException("The filter is too large to fit in a byte array: " + bytes + " bytes");
+        ByteBuffer buffer = ByteBuffer.allocate((int) bytes);
+        buffer.putInt(MAGIC).putInt(hashCount).putInt(blockCount).putLong(expectedElements);
+        buffer.asLongBuffer().put(words);
+        return buffer.array();
+    }
+    
+    /**
+     * Returns: The filter that was turned into the provided bytes by toByteArray()
+     */
+    public static <E> MyBloomFilter<E> fromByteArray(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (bytes.length < HEADER_BYTES || buffer.getInt() != MAGIC)
+            throw new IllegalArgumentException("Not a serialized MyBloomFilter");
+        int hashCount = buffer.getInt();
+        int blockCount = buffer.getInt();
+        long expectedElements = buffer.getLong();
+        if (hashCount < 1 || blockCount < 1 || blockCount > MAX_BLOCKS || expectedElements < 1
+                || buffer.remaining() != (long) blockCount * WORDS_PER_BLOCK * Long.BYTES)
+            throw new IllegalArgumentException("Corrupted MyBloomFilter data");
+        long[] words = new long[blockCount * WORDS_PER_BLOCK];
+        buffer.asLongBuffer().get(words);
+        return new MyBloomFilter<>(words, blockCount, hashCount, expectedElements);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+package mydatastructures;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns values of type T into a fixed number of bytes and back
+ * Used by the data structures that keep their content outside of the Java heap (for example MyPersistentHashMap),
+ * every value takes exactly width() bytes, so the position of a value can be calculated instead of stored.
+ */
+public interface MyCodec<T> {
+    
+    /**
+     * Returns: The number of bytes every encoded value takes
+     */
+    int width();
+    
+    /**
+     * Writes the value into the buffer, starting at the specified position (the buffer's own position is not changed)
+     */
+    void write(ByteBuffer buffer, int position, T value);
+    
+    /**
+     * Returns: The value that starts at the specified position in the buffer
+     */
+    T read(ByteBuffer buffer, int position);
+    
+    MyCodec<Integer> INT = new MyCodec<Integer>() {
+        @Override
+        public int width() {
+            return Integer.BYTES;
+        }
+        
+        @Override
+        public void write(ByteBuffer buffer, int position, Integer value) {
+            buffer.putInt(position, value);
+        }
+        
+        @Override
+        public Integer read(ByteBuffer buffer, int position) {
+            return buffer.getInt(position);
+        }
+    };
+    
+    MyCodec<Long> LONG = new MyCodec<Long>() {
+        @Override
+        public int width() {
+            return Long.BYTES;
+        }
+        
+        @Override
+        public void write(ByteBuffer buffer, int position, Long value) {
+            buffer.putLong(position, value);
+        }
+        
+        @Override
+        public Long read(ByteBuffer buffer, int position) {
+            return buffer.getLong(position);
+        }
+    };
+    
+    MyCodec<Double> DOUBLE = new MyCodec<Double>() {
+        @Override
+        public int width() {
+            return Double.BYTES;
+        }
+        
+        @Override
+        public void write(ByteBuffer buffer, int position, Double value) {
+            buffer.putDouble(position, value);
+        }
+        
+        @Override
+        public Double read(ByteBuffer buffer, int position) {
+            return buffer.getDouble(position);
+        }
+    };
+    
+    /**
+     * Returns: A codec for strings of up to maxBytes bytes (UTF-8 encoded)
+     * A longer string is rejected with an IllegalArgumentException
+     */
+    //The string is stored as its length (2 bytes) followed by its bytes, the rest of the space is filled with zeros
+    // (so two equal strings are always encoded into exactly the same bytes)
+    static MyCodec<String> fixedString(int maxBytes) {
+        if (maxBytes < 0 || maxBytes > Short.MAX_VALUE)
+            throw new IllegalArgumentException("Max string length in bytes must be between 0 and " + Short.MAX_VALUE);
+        
+        return new MyCodec<String>() {
+            @Override
+            public int width() {
+                return Short.BYTES + maxBytes;
+            }
+            
+            @Override
+            public void write(ByteBuffer buffer, int position, String value) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > maxBytes)
+                    throw new IllegalArgumentException("String is longer than " + maxBytes + " bytes: " + value);
+                buffer.putShort(position, (short) bytes.length);
+                for (int i = 0; i < maxBytes; i++)
+                    buffer.put(position + Short.BYTES + i, i < bytes.length ? bytes[i] : 0);
+            }
+            
+            @Override
+            public String read(ByteBuffer buffer, int position) {
+                byte[] bytes = new byte[buffer.getShort(position)];
+                for (int i = 0; i < bytes.length; i++)
+                    bytes[i] = buffer.get(position + Short.BYTES + i);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+}
\ No newline at end of file
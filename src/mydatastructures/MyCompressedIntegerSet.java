@@ -0,0 +1,908 @@
+package mydatastructures;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of int values stored in compressed form, a specialized replacement for MyGenericHashSet<Integer>
+ * (the idea comes from Roaring bitmaps).
+ * Values are split into chunks by their upper 16 bits, and the lower 16 bits of the values in a chunk
+ * are kept in one of three kinds of containers, whichever is smallest:
+ * a sorted array (sparse chunks), a bitmap of 65536 bits (dense chunks) or a list of runs (ranges of consecutive values).
+ * There is no Integer object or node allocated per value, a dense range takes a few bits per value (or less, as runs),
+ * and and/or/andNot between two bitmaps work on 64 values at a time.
+ */
+//Chunks are ordered by their key, and the keys are kept in a sorted array and found by binary search,
+// a set can have at most 65536 chunks so that search takes at most 16 steps.
+//The sign bit is flipped before a value is split, so the chunks (and iteration) are in normal signed int order
+public class MyCompressedIntegerSet implements Iterable<Integer> {
+    
+    // an array of 4096 chars takes as much memory as a bitmap of 65536 bits (8kB), more values than that are stored as a bitmap
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+    // a run takes 4 bytes, 2048 of them take as much memory as a bitmap
+    private static final int RUNS_MAX = 2048;
+    
+    //keys[i] is the upper 16 bits of all values in containers[i], sorted in ascending order
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int containerCount = 0;
+    private long cardinality = 0;
+    // counts changes, the iterator uses it to notice that the set was changed under it
+    private int modCount = 0;
+    
+    private static char keyOf(int value) {
+        return (char) ((value ^ Integer.MIN_VALUE) >>> 16);
+    }
+    
+    private static int valueOf(char key, int low) {
+        return ((key << 16) | low) ^ Integer.MIN_VALUE;
+    }
+    
+    /**
+     * Returns: The index of the container with the provided key,
+     * or -(insertion point + 1) if there is no such container
+     */
+    private int findContainer(char key) {
+        return Arrays.binarySearch(keys, 0, containerCount, key);
+    }
+    
+    private void insertContainer(int index, char key, Container container) {
+        if (containerCount == keys.length) {
+            keys = Arrays.copyOf(keys, containerCount * 2);
+            containers = Arrays.copyOf(containers, containerCount * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+        System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+        keys[index] = key;
+        containers[index] = container;
+        containerCount++;
+    }
+    
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, containerCount - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, containerCount - index - 1);
+        containers[--containerCount] = null;
+    }
+    
+    //used by the bulk operations, which build their result chunk by chunk in ascending order
+    private void appendContainer(char key, Container container) {
+        if (container.cardinality() == 0)
+            return;
+        insertContainer(containerCount, key, container);
+        cardinality += container.cardinality();
+    }
+    
+    /**
+     * Adds the value to the set
+     * Returns: false if the value was already in the set
+     */
+    public boolean add(int value) {
+        char key = keyOf(value);
+        int index = findContainer(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        Container container = containers[index];
+        int oldCardinality = container.cardinality();
+        container = container.add((char) value);
+        containers[index] = container;
+        if (container.cardinality() == oldCardinality)
+            return false;
+        cardinality++;
+        modCount++;
+        return true;
+    }
+    
+    /**
+     * Adds all values between first and last (both included) to the set
+     */
+    //whole chunks covered by the range become a single run, so even a huge range takes only a few bytes
+    public void addRange(int first, int last) {
+        if (first > last)
+            return;
+        char firstKey = keyOf(first), lastKey = keyOf(last);
+        for (int key = firstKey; key <= lastKey; key++) {
+            int low = key == firstKey ? (char) first : 0;
+            int high = key == lastKey ? (char) last : 0xFFFF;
+            Container range = new RunContainer(low, high);
+            int index = findContainer((char) key);
+            if (index < 0) {
+                insertContainer(-index - 1, (char) key, range);
+                cardinality += range.cardinality();
+            } else {
+                Container container = containers[index];
+                cardinality -= container.cardinality();
+                containers[index] = container.or(range);
+                cardinality += containers[index].cardinality();
+            }
+        }
+        modCount++;
+    }
+    
+    /**
+     * Removes the value from the set
+     * Returns: false if the value was not in the set to begin with
+     */
+    public boolean remove(int value) {
+        int index = findContainer(keyOf(value));
+        if (index < 0)
+            return false;
+        Container container = containers[index];
+        int oldCardinality = container.cardinality();
+        container = container.remove((char) value);
+        if (container.cardinality() == oldCardinality)
+            return false;
+        
+        if (container.cardinality() == 0)
+            removeContainer(index);
+        else
+            containers[index] = container;
+        cardinality--;
+        modCount++;
+        return true;
+    }
+    
+    /**
+     * Returns: true if the set contains the value
+     */
+    //Runtime complexity: O(log n) at worst (binary search in the chunk keys, and in an array or run container)
+    public boolean contains(int value) {
+        int index = findContainer(keyOf(value));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+    
+    /**
+     * Returns: The number of values in the set (a set of ints can have more than Integer.MAX_VALUE values)
+     */
+    public long cardinality() {
+        return cardinality;
+    }
+    
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+    
+    /**
+     * Removes all values from the set
+     */
+    public void clear() {
+        keys = new char[4];
+        containers = new Container[4];
+        containerCount = 0;
+        cardinality = 0;
+        modCount++;
+    }
+    
+    /**
+     * Returns: A new set with the values that are in both this and the other set
+     */
+    public MyCompressedIntegerSet and(MyCompressedIntegerSet other) {
+        MyCompressedIntegerSet result = new MyCompressedIntegerSet();
+        int i = 0, j = 0;
+        while (i < containerCount && j < other.containerCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendContainer(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns: A new set with the values that are in this set, the other set, or both
+     */
+    public MyCompressedIntegerSet or(MyCompressedIntegerSet other) {
+        MyCompressedIntegerSet result = new MyCompressedIntegerSet();
+        int i = 0, j = 0;
+        while (i < containerCount || j < other.containerCount) {
+            if (j == other.containerCount || (i < containerCount && keys[i] < other.keys[j])) {
+                result.appendContainer(keys[i], containers[i].copy());
+                i++;
+            } else if (i == containerCount || keys[i] > other.keys[j]) {
+                result.appendContainer(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.appendContainer(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns: A new set with the values of this set that are not in the other set
+     */
+    public MyCompressedIntegerSet andNot(MyCompressedIntegerSet other) {
+        MyCompressedIntegerSet result = new MyCompressedIntegerSet();
+        int j = 0;
+        for (int i = 0; i < containerCount; i++) {
+            while (j < other.containerCount && other.keys[j] < keys[i])
+                j++;
+            if (j < other.containerCount && other.keys[j] == keys[i])
+                result.appendContainer(keys[i], containers[i].andNot(other.containers[j]));
+            else
+                result.appendContainer(keys[i], containers[i].copy());
+        }
+        return result;
+    }
+    
+    /**
+     * Returns: The number of values that are in both this and the other set (without creating the intersection)
+     */
+    public long andCardinality(MyCompressedIntegerSet other) {
+        long count = 0;
+        int i = 0, j = 0;
+        while (i < containerCount && j < other.containerCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                count += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Converts every chunk into whichever container is the smallest for it,
+     * useful after adding many consecutive values one by one (they are not turned into runs automatically)
+     */
+    public void runOptimize() {
+        for (int i = 0; i < containerCount; i++)
+            containers[i] = containers[i].optimize();
+    }
+    
+    /**
+     * Returns: An estimate of the memory taken by the values of this set, in bytes
+     */
+    public long estimatedSizeInBytes() {
+        //2 bytes for the key and 8 for the reference and the container object header (roughly)
+        long bytes = 0;
+        for (int i = 0; i < containerCount; i++)
+            bytes += 10 + containers[i].sizeInBytes();
+        return bytes;
+    }
+    
+    /**
+     * Performs the action for every value in the set, in ascending order (without boxing the values)
+     */
+    public void forEachValue(IntConsumer action) {
+        for (int i = 0; i < containerCount; i++)
+            containers[i].forEach(keys[i], action);
+    }
+    
+    /** Returns: An iterator that goes through all values in ascending order */
+    @Override
+    public Iterator<Integer> iterator() {
+        return new MyCompressedIntegerSetIterator();
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        forEachValue(value -> sb.append(value).append(", "));
+        if (cardinality != 0)
+            sb.setLength(sb.length() - 2);
+        return sb.append("]").toString();
+    }
+    
+    private class MyCompressedIntegerSetIterator implements Iterator<Integer> {
+        private int containerIndex = 0;
+        // lower 16 bits of the next value in the current container, -1 if there are no more values
+        private int nextLow = -1;
+        private final int expectedModCount = modCount;
+        
+        MyCompressedIntegerSetIterator() {
+            if (containerCount > 0)
+                nextLow = containers[0].nextValue(0);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return nextLow >= 0;
+        }
+        
+        @Override
+        public Integer next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (nextLow < 0)
+                throw new NoSuchElementException();
+            int value = valueOf(keys[containerIndex], nextLow);
+            nextLow = containers[containerIndex].nextValue(nextLow + 1);
+            while (nextLow < 0 && ++containerIndex < containerCount)
+                nextLow = containers[containerIndex].nextValue(0);
+            return value;
+        }
+    }
+    
+    /**
+     * Holds the lower 16 bits of all values in one chunk
+     */
+    //Changing operations return the container that holds the result, which is a new container
+    // if the change made a different kind of container the better fit (for example an array that got too big)
+    private static abstract class Container {
+        
+        abstract int cardinality();
+        
+        abstract boolean contains(char low);
+        
+        abstract Container add(char low);
+        
+        abstract Container remove(char low);
+        
+        /**
+         * Sets the bits of all values of this container in the bitmap
+         */
+        abstract void setBits(long[] words);
+        
+        /**
+         * Clears the bits of all values of this container in the bitmap
+         */
+        abstract void clearBits(long[] words);
+        
+        /**
+         * Returns: The smallest value in this container that is >= from, or -1 if there is none
+         */
+        abstract int nextValue(int from);
+        
+        abstract void forEach(char key, IntConsumer action);
+        
+        abstract Container copy();
+        
+        abstract int sizeInBytes();
+        
+        /**
+         * Returns: The values of this container as a new bitmap
+         */
+        long[] toWords() {
+            long[] words = new long[BITMAP_WORDS];
+            setBits(words);
+            return words;
+        }
+        
+        Container optimize() {
+            return fromWords(toWords());
+        }
+        
+        //Any operation with an array container is done by checking the (at most 4096) values of the array,
+        // everything else is done 64 values at a time on bitmaps
+        Container and(Container other) {
+            if (other instanceof ArrayContainer)
+                return ((ArrayContainer) other).filter(this, true);
+            long[] words = toWords();
+            long[] otherWords = other instanceof BitmapContainer ? ((BitmapContainer) other).words : other.toWords();
+            for (int i = 0; i < BITMAP_WORDS; i++)
+                words[i] &= otherWords[i];
+            return fromWords(words);
+        }
+        
+        Container or(Container other) {
+            long[] words = toWords();
+            other.setBits(words);
+            return fromWords(words);
+        }
+        
+        Container andNot(Container other) {
+            long[] words = toWords();
+            other.clearBits(words);
+            return fromWords(words);
+        }
+        
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer)
+                return other.andCardinality(this);
+            long[] words = this instanceof BitmapContainer ? ((BitmapContainer) this).words : toWords();
+            long[] otherWords = other instanceof BitmapContainer ? ((BitmapContainer) other).words : other.toWords();
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+                count += Long.bitCount(words[i] & otherWords[i]);
+            return count;
+        }
+    }
+    
+    /**
+     * Returns: The smallest container (array, bitmap or runs) that holds exactly the values set in the bitmap
+     */
+    private static Container fromWords(long[] words) {
+        int cardinality = 0;
+        int runs = 0;
+        long previous = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+            //a run starts at every set bit whose lower neighbour (the previous bit) is not set
+            runs += Long.bitCount(word & ~((word << 1) | (previous >>> 63)));
+            previous = word;
+        }
+        
+        int arrayBytes = cardinality * 2;
+        int runBytes = runs * 4;
+        if (runBytes < Math.min(arrayBytes, BITMAP_WORDS * 8))
+            return RunContainer.fromWords(words, runs, cardinality);
+        if (cardinality <= ARRAY_MAX)
+            return ArrayContainer.fromWords(words, cardinality);
+        return new BitmapContainer(words, cardinality);
+    }
+    
+    private static void setRange(long[] words, int first, int last) {
+        int firstWord = first >>> 6, lastWord = last >>> 6;
+        long firstMask = -1L << first, lastMask = -1L >>> (63 - (last & 63));
+        if (firstWord == lastWord) {
+            words[firstWord] |= firstMask & lastMask;
+            return;
+        }
+        words[firstWord] |= firstMask;
+        for (int i = firstWord + 1; i < lastWord; i++)
+            words[i] = -1L;
+        words[lastWord] |= lastMask;
+    }
+    
+    private static void clearRange(long[] words, int first, int last) {
+        int firstWord = first >>> 6, lastWord = last >>> 6;
+        long firstMask = -1L << first, lastMask = -1L >>> (63 - (last & 63));
+        if (firstWord == lastWord) {
+            words[firstWord] &= ~(firstMask & lastMask);
+            return;
+        }
+        words[firstWord] &= ~firstMask;
+        for (int i = firstWord + 1; i < lastWord; i++)
+            words[i] = 0;
+        words[lastWord] &= ~lastMask;
+    }
+    
+    /**
+     * Sorted array of values, for sparse chunks (at most ARRAY_MAX values)
+     */
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int size;
+        
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+        
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+        
+        static ArrayContainer fromWords(long[] words, int cardinality) {
+            char[] values = new char[Math.max(cardinality, 1)];
+            int size = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+                for (long word = words[i]; word != 0; word &= word - 1)
+                    values[size++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+            return new ArrayContainer(values, size);
+        }
+        
+        @Override
+        int cardinality() {
+            return size;
+        }
+        
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, size, low) >= 0;
+        }
+        
+        @Override
+        Container add(char low) {
+            int index = Arrays.binarySearch(values, 0, size, low);
+            if (index >= 0)
+                return this;
+            if (size == ARRAY_MAX) {
+                long[] words = toWords();
+                words[low >>> 6] |= 1L << low;
+                return new BitmapContainer(words, size + 1);
+            }
+            
+            index = -index - 1;
+            if (size == values.length)
+                values = Arrays.copyOf(values, Math.min(size * 2, ARRAY_MAX));
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = low;
+            size++;
+            return this;
+        }
+        
+        @Override
+        Container remove(char low) {
+            int index = Arrays.binarySearch(values, 0, size, low);
+            if (index < 0)
+                return this;
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+            return this;
+        }
+        
+        /**
+         * Returns: A new array container with the values that are (keep = true) or are not (keep = false) in the other container
+         */
+        ArrayContainer filter(Container other, boolean keep) {
+            char[] result = new char[Math.max(size, 1)];
+            int count = 0;
+            for (int i = 0; i < size; i++)
+                if (other.contains(values[i]) == keep)
+                    result[count++] = values[i];
+            return new ArrayContainer(result, count);
+        }
+        
+        @Override
+        Container and(Container other) {
+            return filter(other, true);
+        }
+        
+        @Override
+        Container or(Container other) {
+            if (other instanceof ArrayContainer && size + other.cardinality() <= ARRAY_MAX) {
+                //merge of two sorted arrays
+                ArrayContainer array = (ArrayContainer) other;
+                char[] result = new char[Math.max(size + array.size, 1)];
+                int i = 0, j = 0, count = 0;
+                while (i < size && j < array.size) {
+                    if (values[i] < array.values[j])
+                        result[count++] = values[i++];
+                    else if (values[i] > array.values[j])
+                        result[count++] = array.values[j++];
+                    else {
+                        result[count++] = values[i++];
+                        j++;
+                    }
+                }
+                while (i < size)
+                    result[count++] = values[i++];
+                while (j < array.size)
+                    result[count++] = array.values[j++];
+                return new ArrayContainer(result, count);
+            }
+            return super.or(other);
+        }
+        
+        @Override
+        Container andNot(Container other) {
+            return filter(other, false);
+        }
+        
+        @Override
+        int andCardinality(Container other) {
+            int count = 0;
+            for (int i = 0; i < size; i++)
+                if (other.contains(values[i]))
+                    count++;
+            return count;
+        }
+        
+        @Override
+        void setBits(long[] words) {
+            for (int i = 0; i < size; i++)
+                words[values[i] >>> 6] |= 1L << values[i];
+        }
+        
+        @Override
+        void clearBits(long[] words) {
+            for (int i = 0; i < size; i++)
+                words[values[i] >>> 6] &= ~(1L << values[i]);
+        }
+        
+        @Override
+        int nextValue(int from) {
+            if (from > Character.MAX_VALUE)
+                return -1;
+            int index = Arrays.binarySearch(values, 0, size, (char) from);
+            if (index >= 0)
+                return from;
+            index = -index - 1;
+            return index < size ? values[index] : -1;
+        }
+        
+        @Override
+        void forEach(char key, IntConsumer action) {
+            for (int i = 0; i < size; i++)
+                action.accept(valueOf(key, values[i]));
+        }
+        
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(size, 1)), size);
+        }
+        
+        @Override
+        int sizeInBytes() {
+            return values.length * 2;
+        }
+    }
+    
+    /**
+     * One bit for each of the 65536 possible values, for dense chunks
+     */
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+        
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+        
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+        
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+        
+        @Override
+        Container add(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                words[low >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+        
+        @Override
+        Container remove(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0)
+                return this;
+            words[low >>> 6] &= ~bit;
+            cardinality--;
+            return cardinality <= ARRAY_MAX ? ArrayContainer.fromWords(words, cardinality) : this;
+        }
+        
+        @Override
+        long[] toWords() {
+            return words.clone();
+        }
+        
+        @Override
+        void setBits(long[] words) {
+            for (int i = 0; i < BITMAP_WORDS; i++)
+                words[i] |= this.words[i];
+        }
+        
+        @Override
+        void clearBits(long[] words) {
+            for (int i = 0; i < BITMAP_WORDS; i++)
+                words[i] &= ~this.words[i];
+        }
+        
+        @Override
+        int nextValue(int from) {
+            if (from > Character.MAX_VALUE)
+                return -1;
+            int i = from >>> 6;
+            long word = words[i] & (-1L << from);
+            while (word == 0) {
+                if (++i == BITMAP_WORDS)
+                    return -1;
+                word = words[i];
+            }
+            return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+        
+        @Override
+        void forEach(char key, IntConsumer action) {
+            for (int i = 0; i < BITMAP_WORDS; i++)
+                for (long word = words[i]; word != 0; word &= word - 1)
+                    action.accept(valueOf(key, (i << 6) + Long.numberOfTrailingZeros(word)));
+        }
+        
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+        
+        @Override
+        int sizeInBytes() {
+            return BITMAP_WORDS * 8;
+        }
+    }
+    
+    /**
+     * Ranges of consecutive values, for chunks where the values come in long runs
+     */
+    //runs[2 * i] is the first value of run i and runs[2 * i + 1] its length - 1, the runs are sorted and never touch each other
+    private static final class RunContainer extends Container {
+        private char[] runs;
+        private int runCount;
+        private int cardinality;
+        
+        RunContainer(int first, int last) {
+            this(new char[] {(char) first, (char) (last - first)}, 1, last - first + 1);
+        }
+        
+        RunContainer(char[] runs, int runCount, int cardinality) {
+            this.runs = runs;
+            this.runCount = runCount;
+            this.cardinality = cardinality;
+        }
+        
+        static RunContainer fromWords(long[] words, int runCount, int cardinality) {
+            char[] runs = new char[runCount * 2];
+            int count = 0;
+            int start = nextSetBit(words, 0);
+            while (start >= 0) {
+                int end = nextClearBit(words, start);
+                runs[count * 2] = (char) start;
+                runs[count * 2 + 1] = (char) (end - 1 - start);
+                count++;
+                start = end > Character.MAX_VALUE ? -1 : nextSetBit(words, end);
+            }
+            return new RunContainer(runs, count, cardinality);
+        }
+        
+        private static int nextSetBit(long[] words, int from) {
+            int i = from >>> 6;
+            long word = words[i] & (-1L << from);
+            while (word == 0) {
+                if (++i == BITMAP_WORDS)
+                    return -1;
+                word = words[i];
+            }
+            return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+        
+        //returns 65536 if all bits from 'from' to the end are set
+        private static int nextClearBit(long[] words, int from) {
+            int i = from >>> 6;
+            long word = ~words[i] & (-1L << from);
+            while (word == 0) {
+                if (++i == BITMAP_WORDS)
+                    return BITMAP_WORDS << 6;
+                word = ~words[i];
+            }
+            return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+        
+        private int start(int run) {
+            return runs[run * 2];
+        }
+        
+        private int end(int run) {
+            return runs[run * 2] + runs[run * 2 + 1];
+        }
+        
+        /**
+         * Returns: The index of the last run that starts at or before the value, or -1 if there is none
+         */
+        private int findRun(int low) {
+            int lowIndex = 0, highIndex = runCount - 1;
+            while (lowIndex <= highIndex) {
+                int middle = (lowIndex + highIndex) >>> 1;
+                if (start(middle) <= low)
+                    lowIndex = middle + 1;
+                else
+                    highIndex = middle - 1;
+            }
+            return highIndex;
+        }
+        
+        private void insertRun(int index, int first, int last) {
+            if (runCount * 2 == runs.length)
+                runs = Arrays.copyOf(runs, Math.max(runs.length * 2, 4));
+            System.arraycopy(runs, index * 2, runs, index * 2 + 2, (runCount - index) * 2);
+            runs[index * 2] = (char) first;
+            runs[index * 2 + 1] = (char) (last - first);
+            runCount++;
+        }
+        
+        private void removeRun(int index) {
+            System.arraycopy(runs, index * 2 + 2, runs, index * 2, (runCount - index - 1) * 2);
+            runCount--;
+        }
+        
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+        
+        @Override
+        boolean contains(char low) {
+            int run = findRun(low);
+            return run >= 0 && low <= end(run);
+        }
+        
+        @Override
+        Container add(char low) {
+            int run = findRun(low);
+            if (run >= 0 && low <= end(run))
+                return this;
+            
+            boolean joinsPrevious = run >= 0 && low == end(run) + 1;
+            boolean joinsNext = run + 1 < runCount && low + 1 == start(run + 1);
+            if (joinsPrevious && joinsNext) {
+                runs[run * 2 + 1] = (char) (end(run + 1) - start(run));
+                removeRun(run + 1);
+            } else if (joinsPrevious) {
+                runs[run * 2 + 1]++;
+            } else if (joinsNext) {
+                runs[run * 2 + 2]--;
+                runs[run * 2 + 3]++;
+            } else {
+                insertRun(run + 1, low, low);
+            }
+            cardinality++;
+            //too many short runs, an array or a bitmap is smaller now
+            return runCount > RUNS_MAX ? optimize() : this;
+        }
+        
+        @Override
+        Container remove(char low) {
+            int run = findRun(low);
+            if (run < 0 || low > end(run))
+                return this;
+            
+            int start = start(run), end = end(run);
+            if (start == end) {
+                removeRun(run);
+            } else if (low == start) {
+                runs[run * 2]++;
+                runs[run * 2 + 1]--;
+            } else if (low == end) {
+                runs[run * 2 + 1]--;
+            } else {
+                //the run is split in two
+                runs[run * 2 + 1] = (char) (low - 1 - start);
+                insertRun(run + 1, low + 1, end);
+            }
+            cardinality--;
+            return runCount > RUNS_MAX ? optimize() : this;
+        }
+        
+        @Override
+        void setBits(long[] words) {
+            for (int i = 0; i < runCount; i++)
+                setRange(words, start(i), end(i));
+        }
+        
+        @Override
+        void clearBits(long[] words) {
+            for (int i = 0; i < runCount; i++)
+                clearRange(words, start(i), end(i));
+        }
+        
+        @Override
+        int nextValue(int from) {
+            int run = findRun(from);
+            if (run >= 0 && from <= end(run))
+                return from;
+            return run + 1 < runCount ? start(run + 1) : -1;
+        }
+        
+        @Override
+        void forEach(char key, IntConsumer action) {
+            for (int i = 0; i < runCount; i++)
+                for (int low = start(i); low <= end(i); low++)
+                    action.accept(valueOf(key, low));
+        }
+        
+        @Override
+        Container copy() {
+            return new RunContainer(Arrays.copyOf(runs, Math.max(runCount * 2, 2)), runCount, cardinality);
+        }
+        
+        @Override
+        int sizeInBytes() {
+            return runs.length * 2;
+        }
+    }
+}
\ No newline at end of file
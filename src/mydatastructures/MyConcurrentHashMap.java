@@ -0,0 +1,614 @@
+package mydatastructures;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A thread safe version of MyGenericHashMap, meant to be shared between threads without any outside synchronization.
+ * Reads never lock, a write only locks the single bucket(bin) it changes,
+ * and when the table needs to grow every thread that touches the map helps moving the buckets.
+ */
+//This is a simplified version of the approach used by java.util.concurrent.ConcurrentHashMap:
+// - the table is an AtomicReferenceArray, so a thread reading a bucket always sees the latest first node
+// - an empty bucket is filled with a compareAndSet, no lock needed at all
+// - a non-empty bucket is changed while holding the lock of its first node (synchronized),
+//   threads writing to other buckets never wait for each other
+// - node values and next references are volatile, so readers can walk a bucket while it's being changed
+//Neither keys nor values can be null, a null returned from get() always means "not in the map".
+public class MyConcurrentHashMap<K, V> {
+    
+    private static final int START_CAP_DEFAULT = 16;
+    private static final int MAX_CAP = 1 << 30;
+    //each thread that helps with a resize claims this many buckets (at least) at a time
+    private static final int MIN_TRANSFER_STRIDE = 16;
+    
+    //special hash values, real hashes are always >= 0 (see spread())
+    static final int MOVED = -1;    // the bucket was moved to the next table (ForwardingNode)
+    static final int RESERVED = -2; // the bucket is being filled by computeIfAbsent (ReservationNode)
+    
+    private volatile AtomicReferenceArray<Node<K, V>> table;
+    // the table the buckets are being moved into, null when no resize is in progress
+    private volatile AtomicReferenceArray<Node<K, V>> nextTable;
+    // resizing moves buckets from the top of the table down, every thread claims the next range below this index
+    private final AtomicInteger transferIndex = new AtomicInteger();
+    // 0 = no resize, otherwise 1 + count of threads currently helping with the resize
+    // the thread that brings it down to 1 is the last one out, and it's the one that switches to the new table
+    private final AtomicInteger resizeState = new AtomicInteger();
+    // resize when the number of entries reaches this count
+    private volatile int threshold;
+    
+    //LongAdder spreads the counter over several cells when many threads update it at once,
+    // a plain AtomicInteger would make every put() fight over the same memory location
+    private final LongAdder count = new LongAdder();
+    
+    /**
+     * Default constructor
+     */
+    public MyConcurrentHashMap() {
+        this(START_CAP_DEFAULT);
+    }
+    
+    /**
+     * Constructs a map with the desired initial capacity (rounded up to a power of two)
+     */
+    //the load factor is fixed to 0.75, with a concurrent resize there is little point in tuning it
+    public MyConcurrentHashMap(int initialCapacity) {
+        int capacity = MyOpenAddressingTable.tableSizeFor(initialCapacity);
+        table = new AtomicReferenceArray<>(capacity);
+        threshold = thresholdFor(capacity);
+    }
+    
+    private static int thresholdFor(int capacity) {
+        return (capacity >>> 1) + (capacity >>> 2); // 0.75 * capacity
+    }
+    
+    /**
+     * Hash function
+     */
+    //same spreading as MyOpenAddressingTable, with the sign bit cleared so negative values can be used as markers
+    static int spread(int hashCode) {
+        return MyOpenAddressingTable.spread(hashCode) & 0x7fffffff;
+    }
+    
+    /**
+     * Returns: The value that is connected to the provided key, or null if the key is not in this map
+     */
+    //Runtime complexity: O(1), never locks
+    public V get(K key) {
+        int hash = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        while (true) {
+            Node<K, V> node = tab.get(hash & (tab.length() - 1));
+            if (node == null)
+                return null;
+            //the bucket was already moved, look for the key in the next table
+            if (node.hash == MOVED) {
+                tab = ((ForwardingNode<K, V>) node).nextTable;
+                continue;
+            }
+            //a reservation node never matches (its hash is negative) and has no next node
+            for (; node != null; node = node.next)
+                if (node.hash == hash && (node.key == key || key.equals(node.key)))
+                    return node.value;
+            return null;
+        }
+    }
+    
+    /**
+     * Returns: true if provided key is in this map
+     */
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+    
+    /**
+     * Adds an Entry with specified key and value into the map
+     * Returns: the old value (if specified key was already in the map)
+     * or the value added(if not)
+     */
+    public V put(K key, V value) {
+        V oldValue = putValue(key, value, false);
+        return oldValue == null ? value : oldValue;
+    }
+    
+    /**
+     * Adds the key and value only if the key is not in the map yet, as a single atomic operation
+     * Returns: the value already in the map, or null if the new value was added
+     */
+    public V putIfAbsent(K key, V value) {
+        return putValue(key, value, true);
+    }
+    
+    /**
+     * Returns: the previous value of the key, or null if it wasn't in the map
+     */
+    private V putValue(K key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        int hash = spread(key.hashCode());
+        int bucketSize = 0;
+        
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        while (true) {
+            int index = hash & (tab.length() - 1);
+            Node<K, V> first = tab.get(index);
+            if (first == null) {
+                //empty bucket, no need to lock anything, if another thread filled it in the meantime just try again
+                if (tab.compareAndSet(index, null, new Node<>(hash, key, value)))
+                    break;
+            } else if (first.hash == MOVED) {
+                tab = helpTransfer((ForwardingNode<K, V>) first);
+            } else {
+                V oldValue = null;
+                synchronized (first) {
+                    //the first node could have been removed (or the bucket moved) before the lock was acquired
+                    if (tab.get(index) == first && first.hash >= 0) {
+                        bucketSize = 1;
+                        for (Node<K, V> node = first; ; bucketSize++) {
+                            if (node.hash == hash && (node.key == key || key.equals(node.key))) {
+                                oldValue = node.value;
+                                if (!onlyIfAbsent)
+                                    node.value = value;
+                                break;
+                            }
+                            if (node.next == null) {
+                                node.next = new Node<>(hash, key, value);
+                                break;
+                            }
+                            node = node.next;
+                        }
+                    }
+                }
+                if (bucketSize != 0) {
+                    if (oldValue != null)
+                        return oldValue;
+                    break;
+                }
+            }
+        }
+        addCount(1);
+        return null;
+    }
+    
+    /**
+     * If the key is not in the map, computes its value with the provided function and adds it to the map
+     * The whole operation is atomic, the function is called at most once per key
+     * (it should be short and must not change this map)
+     * Returns: the current (existing or computed) value, or null if the function returned null
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(mappingFunction);
+        int hash = spread(key.hashCode());
+        V value = null;
+        boolean added = false;
+        int bucketSize = 0;
+        
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        while (true) {
+            int index = hash & (tab.length() - 1);
+            Node<K, V> first = tab.get(index);
+            if (first == null) {
+                //the function can't run inside a compareAndSet, so a placeholder node is locked and put into
+                // the empty bucket first, other writers to this bucket will wait on its lock
+                Node<K, V> reservation = new ReservationNode<>();
+                synchronized (reservation) {
+                    if (tab.compareAndSet(index, null, reservation)) {
+                        bucketSize = 1;
+                        Node<K, V> node = null;
+                        try {
+                            if ((value = mappingFunction.apply(key)) != null) {
+                                node = new Node<>(hash, key, value);
+                                added = true;
+                            }
+                        } finally {
+                            tab.set(index, node);
+                        }
+                    }
+                }
+                if (bucketSize != 0)
+                    break;
+            } else if (first.hash == MOVED) {
+                tab = helpTransfer((ForwardingNode<K, V>) first);
+            } else if (first.hash == hash && (first.key == key || key.equals(first.key))) {
+                //the key is the first node of the bucket, no need to lock just to read it
+                return first.value;
+            } else {
+                synchronized (first) {
+                    if (tab.get(index) == first && first.hash >= 0) {
+                        bucketSize = 1;
+                        for (Node<K, V> node = first; ; bucketSize++) {
+                            if (node.hash == hash && (node.key == key || key.equals(node.key))) {
+                                value = node.value;
+                                break;
+                            }
+                            if (node.next == null) {
+                                if ((value = mappingFunction.apply(key)) != null) {
+                                    node.next = new Node<>(hash, key, value);
+                                    added = true;
+                                }
+                                break;
+                            }
+                            node = node.next;
+                        }
+                    }
+                }
+                if (bucketSize != 0)
+                    break;
+            }
+        }
+        if (added)
+            addCount(1);
+        return value;
+    }
+    
+    /**
+     * If the key is not in the map adds it with the provided value,
+     * otherwise replaces its value with the result of remappingFunction(oldValue, value),
+     * if that result is null the key is removed. The whole operation is atomic.
+     * Returns: the new value of the key, or null if it was removed
+     */
+    //typical usage is counting: map.merge(word, 1, Integer::sum)
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        int hash = spread(key.hashCode());
+        V newValue = null;
+        int delta = 0;
+        int bucketSize = 0;
+        
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        while (true) {
+            int index = hash & (tab.length() - 1);
+            Node<K, V> first = tab.get(index);
+            if (first == null) {
+                if (tab.compareAndSet(index, null, new Node<>(hash, key, value))) {
+                    delta = 1;
+                    newValue = value;
+                    break;
+                }
+            } else if (first.hash == MOVED) {
+                tab = helpTransfer((ForwardingNode<K, V>) first);
+            } else {
+                synchronized (first) {
+                    if (tab.get(index) == first && first.hash >= 0) {
+                        bucketSize = 1;
+                        for (Node<K, V> node = first, previous = null; ; bucketSize++) {
+                            if (node.hash == hash && (node.key == key || key.equals(node.key))) {
+                                newValue = remappingFunction.apply(node.value, value);
+                                if (newValue != null)
+                                    node.value = newValue;
+                                else {
+                                    delta = -1;
+                                    unlink(tab, index, previous, node);
+                                }
+                                break;
+                            }
+                            previous = node;
+                            if ((node = node.next) == null) {
+                                delta = 1;
+                                newValue = value;
+                                previous.next = new Node<>(hash, key, value);
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (bucketSize != 0)
+                    break;
+            }
+        }
+        if (delta != 0)
+            addCount(delta);
+        return newValue;
+    }
+    
+    /**
+     * Removes the entry that contains the provided key
+     * Returns: the value that was removed, or null if the key was not in the map
+     */
+    //unlike MyGenericHashMap this returns the removed value,
+    // with several threads around that's the only reliable way to know what was removed
+    public V remove(K key) {
+        int hash = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        while (true) {
+            int index = hash & (tab.length() - 1);
+            Node<K, V> first = tab.get(index);
+            if (first == null)
+                return null;
+            if (first.hash == MOVED) {
+                tab = helpTransfer((ForwardingNode<K, V>) first);
+                continue;
+            }
+            V oldValue = null;
+            boolean checked = false;
+            synchronized (first) {
+                if (tab.get(index) == first && first.hash >= 0) {
+                    checked = true;
+                    for (Node<K, V> node = first, previous = null; node != null; previous = node, node = node.next) {
+                        if (node.hash == hash && (node.key == key || key.equals(node.key))) {
+                            oldValue = node.value;
+                            unlink(tab, index, previous, node);
+                            break;
+                        }
+                    }
+                }
+            }
+            if (checked) {
+                if (oldValue != null)
+                    addCount(-1);
+                return oldValue;
+            }
+        }
+    }
+    
+    /**
+     * Unlinks the node from its bucket, the caller must hold the bucket lock
+     */
+    private static <K, V> void unlink(AtomicReferenceArray<Node<K, V>> tab, int index, Node<K, V> previous, Node<K, V> node) {
+        if (previous == null)
+            tab.set(index, node.next);
+        else
+            previous.next = node.next;
+    }
+    
+    /**
+     * Removes all data from this map
+     */
+    //not atomic as a whole, other threads can add new entries to buckets that were already cleared
+    public void clear() {
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        int index = 0;
+        while (index < tab.length()) {
+            Node<K, V> first = tab.get(index);
+            if (first == null) {
+                index++;
+            } else if (first.hash == MOVED) {
+                tab = helpTransfer((ForwardingNode<K, V>) first);
+                index = 0;
+            } else {
+                int removed = 0;
+                synchronized (first) {
+                    if (tab.get(index) == first && first.hash >= 0) {
+                        for (Node<K, V> node = first; node != null; node = node.next)
+                            removed++;
+                        tab.set(index++, null);
+                    }
+                }
+                if (removed != 0)
+                    addCount(-removed);
+            }
+        }
+    }
+    
+    /**
+     * Updates the entry count, and starts (or helps with) a resize if the table is getting full
+     */
+    private void addCount(int delta) {
+        count.add(delta);
+        if (delta <= 0)
+            return;
+        
+        while (count.sum() >= threshold && table.length() < MAX_CAP) {
+            int state = resizeState.get();
+            if (state == 0) {
+                // no resize going on, try to become the thread that starts it
+                if (resizeState.compareAndSet(0, 2)) {
+                    AtomicReferenceArray<Node<K, V>> tab = table;
+                    //the table could have grown while this thread was between the checks above
+                    if (count.sum() >= threshold) {
+                        AtomicReferenceArray<Node<K, V>> newTable = new AtomicReferenceArray<>(tab.length() << 1);
+                        transferIndex.set(tab.length());
+                        nextTable = newTable;
+                        transfer(tab, newTable);
+                    }
+                    leaveResize();
+                }
+            } else {
+                // a resize is already going on, help it if there are still buckets left to move
+                // (joining after the last range was claimed would only keep the helper count from reaching the end)
+                if (state >= 2 && transferIndex.get() > 0 && resizeState.compareAndSet(state, state + 1)) {
+                    AtomicReferenceArray<Node<K, V>> newTable = nextTable;
+                    if (newTable != null)
+                        transfer(table, newTable);
+                    leaveResize();
+                }
+                //the threads that are still moving buckets will finish the resize, no need to wait for them
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Called by a writer that found a moved bucket, helps with the resize and then returns the table to retry on
+     * (the next table already holds a complete copy of every moved bucket, so writing there right away is fine)
+     */
+    private AtomicReferenceArray<Node<K, V>> helpTransfer(ForwardingNode<K, V> forwardingNode) {
+        int state;
+        while ((state = resizeState.get()) >= 2 && transferIndex.get() > 0 && nextTable == forwardingNode.nextTable) {
+            if (resizeState.compareAndSet(state, state + 1)) {
+                AtomicReferenceArray<Node<K, V>> newTable = nextTable;
+                if (newTable != null)
+                    transfer(table, newTable);
+                leaveResize();
+                break;
+            }
+        }
+        return forwardingNode.nextTable;
+    }
+    
+    /**
+     * Signals that this thread is done helping with the resize,
+     * the last one to leave switches the map over to the new table
+     */
+    private void leaveResize() {
+        if (resizeState.decrementAndGet() == 1) {
+            //no new helpers can join at this point (joining requires a state >= 2)
+            // and every claimed range was finished by the thread that claimed it
+            AtomicReferenceArray<Node<K, V>> newTable = nextTable;
+            if (newTable != null) {
+                table = newTable;
+                threshold = thresholdFor(newTable.length());
+                nextTable = null;
+            }
+            resizeState.set(0);
+        }
+    }
+    
+    /**
+     * Moves buckets from tab into newTable, a range of buckets at a time, until there are no more ranges to claim
+     */
+    private void transfer(AtomicReferenceArray<Node<K, V>> tab, AtomicReferenceArray<Node<K, V>> newTable) {
+        int oldCapacity = tab.length();
+        int stride = Math.max(MIN_TRANSFER_STRIDE, oldCapacity / (8 * Runtime.getRuntime().availableProcessors()));
+        ForwardingNode<K, V> forwardingNode = new ForwardingNode<>(newTable);
+        
+        while (true) {
+            int end = transferIndex.get();
+            if (end <= 0)
+                return;
+            int start = Math.max(0, end - stride);
+            if (!transferIndex.compareAndSet(end, start))
+                continue; // another thread claimed this range, try the next one
+            for (int index = end - 1; index >= start; index--)
+                moveBucket(tab, newTable, index, forwardingNode);
+        }
+    }
+    
+    /**
+     * Copies one bucket into the new table (to bucket i or i + oldCapacity) and marks it as moved
+     */
+    //The nodes are copied, not relinked, because other threads can be reading the old bucket at the same time.
+    private void moveBucket(AtomicReferenceArray<Node<K, V>> tab, AtomicReferenceArray<Node<K, V>> newTable,
+                            int index, ForwardingNode<K, V> forwardingNode) {
+        int oldCapacity = tab.length();
+        while (true) {
+            Node<K, V> first = tab.get(index);
+            if (first == null) {
+                if (tab.compareAndSet(index, null, forwardingNode))
+                    return;
+                continue;
+            }
+            synchronized (first) {
+                if (tab.get(index) != first)
+                    continue; // changed before we got the lock
+                Node<K, V> lowHead = null, lowTail = null, highHead = null, highTail = null;
+                for (Node<K, V> node = first; node != null; node = node.next) {
+                    Node<K, V> copy = new Node<>(node.hash, node.key, node.value);
+                    if ((node.hash & oldCapacity) == 0) {
+                        if (lowTail == null)
+                            lowHead = copy;
+                        else
+                            lowTail.next = copy;
+                        lowTail = copy;
+                    } else {
+                        if (highTail == null)
+                            highHead = copy;
+                        else
+                            highTail.next = copy;
+                        highTail = copy;
+                    }
+                }
+                newTable.set(index, lowHead);
+                newTable.set(index + oldCapacity, highHead);
+                //only mark the bucket as moved once the new buckets are complete
+                tab.set(index, forwardingNode);
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Returns: A set of all keys currently in this map
+     * (a snapshot, keys added or removed by other threads while it's being built may or may not be in it)
+     */
+    public Set<K> keySet() {
+        Set<K> set = new HashSet<>();
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        for (int i = 0; i < tab.length(); i++)
+            collectKeys(tab, i, set);
+        return set;
+    }
+    
+    private static <K, V> void collectKeys(AtomicReferenceArray<Node<K, V>> tab, int index, Set<K> set) {
+        Node<K, V> node = tab.get(index);
+        if (node != null && node.hash == MOVED) {
+            //the bucket was moved, its keys are now in buckets i and i + oldCapacity of the next table
+            AtomicReferenceArray<Node<K, V>> next = ((ForwardingNode<K, V>) node).nextTable;
+            collectKeys(next, index, set);
+            collectKeys(next, index + tab.length(), set);
+            return;
+        }
+        for (; node != null; node = node.next)
+            if (node.hash >= 0)
+                set.add(node.key);
+    }
+    
+    /**
+     * Returns: The count of entries currently in this map
+     * (while other threads are writing, it's an estimate)
+     */
+    public int size() {
+        long sum = count.sum();
+        return sum < 0 ? 0 : (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+    
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (K key : keySet()) {
+            V value = get(key);
+            if (value != null)
+                sb.append("[").append(key).append(", ").append(value).append("]");
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+    
+    static class Node<K, V> {
+        final int hash;
+        final K key;
+        //volatile, so a reader that doesn't lock anything still sees the latest value and links
+        volatile V value;
+        volatile Node<K, V> next;
+        
+        Node(int hash, K key, V value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+    
+    /**
+     * Placed into an old bucket once its nodes are copied to the next table
+     */
+    static final class ForwardingNode<K, V> extends Node<K, V> {
+        final AtomicReferenceArray<Node<K, V>> nextTable;
+        
+        ForwardingNode(AtomicReferenceArray<Node<K, V>> nextTable) {
+            super(MOVED, null, null);
+            this.nextTable = nextTable;
+        }
+    }
+    
+    /**
+     * Placeholder that holds an empty bucket while computeIfAbsent is running
+     */
+    static final class ReservationNode<K, V> extends Node<K, V> {
+        ReservationNode() {
+            super(RESERVED, null, null);
+        }
+    }
+}
\ No newline at end of file
@@ -1,9 +1,23 @@
 package mydatastructures;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class MyGenericArrayList<E> implements Iterable<E>{
     public static final int INITIAL_CAPACITY = 16;
+    // parallelSort() sorts parts up to this size on one thread (below it, splitting costs more than it saves)
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
     
     @SuppressWarnings("unchecked")
     private E[] elements = (E[]) new Object[INITIAL_CAPACITY];
@@ -21,13 +35,34 @@ public class MyGenericArrayList<E> implements Iterable<E>{
     
     private int size = 0; // Number of elements in the list
     
+    // decides how much the internal array grows when it's full, see MyGrowthPolicy
+    private final MyGrowthPolicy growthPolicy;
+    // notified after every resize (null if nobody is listening)
+    private ResizeListener resizeListener;
+    // resize counters, reported by metrics(). They are only updated when the array is replaced, so they cost nothing on add()
+    private int peakCapacity = INITIAL_CAPACITY;
+    private long resizeCount = 0;
+    private long elementsCopied = 0;
+    
+    // optional index from every value to the positions it is at, null while disabled (see enableIndex())
+    private MyGenericHashMap<E, Positions> valueIndex;
+    // true after a change the index didn't follow (anything that shifts elements), it's rebuilt by the next query
+    private boolean indexStale;
+    
     /** Default constructor for an empty list */
-    public MyGenericArrayList() {}
+    public MyGenericArrayList() {
+        this(MyGrowthPolicy.DOUBLING);
+    }
+    
+    /** Constructor for an empty list that grows according to the provided policy */
+    public MyGenericArrayList(MyGrowthPolicy growthPolicy) {
+        this.growthPolicy = Objects.requireNonNull(growthPolicy);
+    }
     
     /** Creates a list from an array of elements of type E */
     public MyGenericArrayList(E[] elements) {
-        for (E element : elements)
-            add(size, element);
+        this();
+        addAll(0, elements);
     }
     
     /** Adds a new element to the end of the list */
@@ -49,41 +84,61 @@ public class MyGenericArrayList<E> implements Iterable<E>{
         guaranteeCapacity();
         
         // Make place for new element by shifting the existing elements
-        // to the right after the specified index
-        for (int i = size - 1; i >= index; i--)
-            elements[i + 1] = elements[i];
+        // to the right after the specified index (arraycopy moves them as one block of memory)
+        System.arraycopy(elements, index, elements, index + 1, size - index);
         
         // Insert the new element
         elements[index] = e;
         
         // Increment size by 1
         size++;
+        
+        //adding at the end doesn't move any other element, so the index can follow it
+        if (index == size - 1)
+            indexAdd(e, index);
+        else
+            indexStale = true;
     }
     
     /** Internal helper method that is called when adding a new element
-     * to make sure that new item can be inserted
-     * Creates a new internal array, with doubled size + 1 */
-    //Runtime complexity: O(n)
+     * to make sure that new item can be inserted */
+    //Runtime complexity: O(1), O(n) when capacity needs to be increased
     private void guaranteeCapacity() {
-        if (size >= elements.length) {
-            @SuppressWarnings("unchecked") // safe, see elements declaration comment above
-            E[] newData = (E[])(new Object[size * 2 + 1]);
-           /* +1 is added for the edge case when trimToSize() method is used and the ArrayList contains no elements
-            meaning the size would be 0, adding a new element would call this method first
-            and if new array was created with capacity of size*2 that would still be 0*2=0
-            so the client wouldn't be able to add new elements */
-            
-            //copy the elements from the old array to the new larger one
-            System.arraycopy(elements, 0, newData, 0, size);
-            //point the elements reference to the new array
-            
-            System.out.println("\nFOR DEMONSTRATION: increasing internal capacity."
-                    + " \n Old Capacity = " + elements.length
-                    + " \n New Capacity = " + newData.length
-                    + " \n Size = " + size + "\n");
-            
-            elements = newData;
-        }
+        if (size >= elements.length)
+            grow(size + 1);
+    }
+    
+    /** Makes sure the list can hold at least minCapacity elements without growing again
+     * (if it has to grow, it grows at least as much as the growth policy says, so calling this before every add() is still cheap) */
+    //Runtime complexity: O(n) if the capacity needs to be increased, O(1) otherwise
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > elements.length)
+            grow(minCapacity);
+    }
+    
+    /** Creates a new internal array, as large as the growth policy says but with room for at least minCapacity elements */
+    //Runtime complexity: O(n)
+    private void grow(int minCapacity) {
+        if (minCapacity > MyGrowthPolicy.MAX_ARRAY_SIZE)
+            throw new OutOfMemoryError("List is too large: " + minCapacity);
+        resize(Math.max(growthPolicy.newCapacity(elements.length, minCapacity), minCapacity));
+    }
+    
+    /** Replaces the internal array with a new one of the provided capacity, and records the resize */
+    //Runtime complexity: O(n)
+    private void resize(int newCapacity) {
+        int oldCapacity = elements.length;
+        @SuppressWarnings("unchecked") // safe, see elements declaration comment above
+        E[] newData = (E[]) (new Object[newCapacity]);
+        //copy the elements from the old array to the new one
+        System.arraycopy(elements, 0, newData, 0, size);
+        elements = newData;
+        
+        resizeCount++;
+        elementsCopied += size;
+        peakCapacity = Math.max(peakCapacity, newCapacity);
+        if (resizeListener != null)
+            resizeListener.resized(oldCapacity, newCapacity, size);
     }
     
     /** Removes an element by index
@@ -94,10 +149,13 @@ public class MyGenericArrayList<E> implements Iterable<E>{
         checkIndex(index);
         
         E e = elements[index];
+        if (index == size - 1)
+            indexRemove(e, index);
+        else
+            indexStale = true;
         
         // Shift elements leftward
-        for (int j = index; j < size - 1; j++)
-            elements[j] = elements[j + 1];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
         
         // This line is optional, as we can just leave the double reference to the last element there
         // since 'size' dictates what we see
@@ -117,6 +175,177 @@ public class MyGenericArrayList<E> implements Iterable<E>{
         return remove(index);
     }
     
+    /** Inserts all elements of the array at the specified index, in the same order
+     * (the elements that were at index and after it end up after the new ones) */
+    //Runtime complexity: O(n + k), k being the number of elements added.
+    // The list grows at most once, and the elements after the index are shifted only once, by k places
+    public void addAll(int index, E[] newElements) {
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException
+                    ("Index: " + index + ", Size: " + size);
+        int count = newElements.length;
+        if (count == 0)
+            return;
+        ensureCapacity(size + count);
+        System.arraycopy(elements, index, elements, index + count, size - index);
+        System.arraycopy(newElements, 0, elements, index, count);
+        size += count;
+        indexStale = true;
+    }
+    
+    /** Inserts all elements of the collection at the specified index, in the order of the collection's iterator */
+    //Runtime complexity: O(n + k)
+    @SuppressWarnings("unchecked") // safe, the array only holds elements of the collection, which are all of type E
+    public void addAll(int index, Collection<? extends E> collection) {
+        //the collection is copied into an array once, so it can be moved in with arraycopy
+        addAll(index, (E[]) collection.toArray());
+    }
+    
+    /** Removes the elements from index 'from' (inclusive) to index 'to' (exclusive),
+     * the elements after them are shifted leftward */
+    //Runtime complexity: O(n), the elements after the range are shifted only once
+    public void removeRange(int from, int to) {
+        if (from < 0 || to > size || from > to)
+            throw new IndexOutOfBoundsException
+                    ("From: " + from + ", To: " + to + ", Size: " + size);
+        System.arraycopy(elements, to, elements, from, size - to);
+        //clear the slots that are no longer used, so the removed elements can be garbage collected
+        Arrays.fill(elements, size - (to - from), size, null);
+        size -= to - from;
+        indexStale = true;
+    }
+    
+    /** Removes all elements for which the filter returns true
+     * Returns: true if any element was removed */
+    //Runtime complexity: O(n), the elements that stay are moved to their place in a single pass
+    public boolean removeIf(Predicate<? super E> filter) {
+        int oldSize = size;
+        int kept = 0;
+        int i = 0;
+        try {
+            for (; i < size; i++) {
+                E e = elements[i];
+                if (!filter.test(e))
+                    elements[kept++] = e;
+            }
+        } finally {
+            //if the filter threw an exception, the elements it didn't get to yet are all kept
+            System.arraycopy(elements, i, elements, kept, size - i);
+            kept += size - i;
+            Arrays.fill(elements, kept, size, null);
+            size = kept;
+            indexStale = true;
+        }
+        return size != oldSize;
+    }
+    
+    /** Replaces every element with the result of the operator applied to it */
+    //Runtime complexity: O(n)
+    public void replaceAll(UnaryOperator<E> operator) {
+        for (int i = 0; i < size; i++)
+            elements[i] = operator.apply(elements[i]);
+        indexStale = true;
+    }
+    
+    /** Sorts the list in place with the comparator (or in natural order if the comparator is null)
+     * The sort is stable, equal elements keep their order */
+    //Runtime complexity: O(n log n), O(n) for a list that is already (almost) sorted.
+    //Arrays.sort() on a range of objects is a TimSort, so the internal array is sorted where it is, without copying the list
+    public void sort(Comparator<? super E> comparator) {
+        Arrays.sort(elements, 0, size, comparator);
+        indexStale = true;
+    }
+    
+    /** Sorts the list like sort(), but large lists are split into parts that are sorted on several threads
+     * (the common ForkJoinPool) and then merged. The sort is stable */
+    //Runtime complexity: O(n log n), spread over the available cores
+    @SuppressWarnings("unchecked") // safe, without a comparator the elements have to be Comparable, same as in sort()
+    public void parallelSort(Comparator<? super E> comparator) {
+        if (size <= PARALLEL_SORT_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            sort(comparator);
+            return;
+        }
+        Comparator<? super E> order = comparator != null ? comparator : (Comparator<? super E>) Comparator.naturalOrder();
+        //the merges need a second array, but only half of it is ever used at the same place, so it's shared by all tasks
+        @SuppressWarnings("unchecked") //safe, see 'elements' declaration comment above
+        E[] buffer = (E[]) new Object[size];
+        ForkJoinPool.commonPool().invoke(new MergeSortTask<>(elements, buffer, 0, size, order));
+        indexStale = true;
+    }
+    
+    //Merge sort: sort both halves (in parallel), then merge them. Parts below the threshold are sorted with TimSort.
+    // Each task only touches its own range of both arrays, so the tasks don't need any locking
+    @SuppressWarnings("serial") // never serialized, a task only lives during one parallelSort() call
+    private static final class MergeSortTask<E> extends RecursiveAction {
+        private final E[] array;
+        private final E[] buffer;
+        private final int from;
+        private final int to;
+        private final Comparator<? super E> comparator;
+        
+        MergeSortTask(E[] array, E[] buffer, int from, int to, Comparator<? super E> comparator) {
+            this.array = array;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_SORT_THRESHOLD) {
+                Arrays.sort(array, from, to, comparator);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new MergeSortTask<>(array, buffer, from, middle, comparator),
+                    new MergeSortTask<>(array, buffer, middle, to, comparator));
+            merge(middle);
+        }
+        
+        private void merge(int middle) {
+            //the halves are already in order (common for partly sorted data), nothing to merge
+            if (comparator.compare(array[middle - 1], array[middle]) <= 0)
+                return;
+            //the left half is moved out of the way, and merged back with the right half from the start of the range
+            System.arraycopy(array, from, buffer, from, middle - from);
+            int left = from, right = middle, target = from;
+            while (left < middle && right < to) {
+                //'<=' takes the left element first when they are equal, that's what keeps the sort stable
+                if (comparator.compare(buffer[left], array[right]) <= 0)
+                    array[target++] = buffer[left++];
+                else
+                    array[target++] = array[right++];
+            }
+            //whatever is left of the right half is already in its place
+            System.arraycopy(buffer, left, array, target, middle - left);
+            Arrays.fill(buffer, from, middle, null);
+        }
+    }
+    
+    /** Searches a list sorted by the comparator (or in natural order if the comparator is null) for the specified element
+     *  Returns: Index of the element (any of them, if there are several equal ones), or if it's not in the list,
+     *  -(insertion point) - 1, where the insertion point is the index at which the element would have to be added
+     *  to keep the list sorted (so the result is negative only if the element was not found) */
+    //Runtime complexity: O(log n), the result is undefined if the list is not sorted
+    @SuppressWarnings("unchecked") // safe, without a comparator the elements have to be Comparable, same as in sort()
+    public int binarySearch(E e, Comparator<? super E> comparator) {
+        Comparator<? super E> order = comparator != null ? comparator : (Comparator<? super E>) Comparator.naturalOrder();
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int result = order.compare(elements[middle], e);
+            if (result < 0)
+                low = middle + 1;
+            else if (result > 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -(low + 1);
+    }
+    
     private void checkIndex(int index) {
         if (index < 0 || index >= size)
             throw new IndexOutOfBoundsException
@@ -129,13 +358,17 @@ public class MyGenericArrayList<E> implements Iterable<E>{
         E[] cleared = (E[])new Object[INITIAL_CAPACITY];
         elements =cleared;
         size = 0;
+        indexStale = true;
     }
     
     /** Checks if the list contains specified element.
      * Returns: true if the specified element is in the list. */
+    //Runtime complexity: O(n), O(1) with the index enabled
     public boolean contains(E e) {
+        if (valueIndex != null && e != null)
+            return index().get(e) != null;
         for (int i = 0; i < size; i++)
-            if (e.equals(elements[i])) return true;
+            if (Objects.equals(e, elements[i])) return true;
         
         return false;
     }
@@ -152,23 +385,35 @@ public class MyGenericArrayList<E> implements Iterable<E>{
         checkIndex(index);
         E temp = elements[index];
         elements[index] = e;
+        indexRemove(temp, index);
+        indexAdd(e, index);
         return temp;
     }
     
     /** Finds the index of the first element int the list that matches the specified element.
      *  Returns: Index of the element or -1 if no match was found. */
+    //Runtime complexity: O(n), O(1) with the index enabled
     public int indexOf(E e) {
+        if (valueIndex != null && e != null) {
+            Positions positions = index().get(e);
+            return positions == null ? -1 : positions.at[0];
+        }
         for (int i = 0; i < size; i++)
-            if (e.equals(elements[i])) return i;
+            if (Objects.equals(e, elements[i])) return i;
         
         return -1;
     }
     
     /** Finds the index of the last element in the list that matches the specified element.
      *  Returns: Index of the element or -1 if no match was found. */
+    //Runtime complexity: O(n), O(1) with the index enabled
     public int lastIndexOf(E e) {
+        if (valueIndex != null && e != null) {
+            Positions positions = index().get(e);
+            return positions == null ? -1 : positions.at[positions.count - 1];
+        }
         for (int i = size - 1; i >= 0; i--)
-            if (e.equals(elements[i])) return i;
+            if (Objects.equals(e, elements[i])) return i;
         
         return -1;
     }
@@ -180,19 +425,116 @@ public class MyGenericArrayList<E> implements Iterable<E>{
     
     /** Trims the capacity to current size */
     public void trimToSize() {
-        if (size != elements.length) {
-            @SuppressWarnings("unchecked") // safe, see elements declaration comment above
-            E[] newData = (E[])(new Object[size]);
-            //make a new smaller array and copy elements(if there are any) into it
-            System.arraycopy(elements, 0, newData, 0, size);
-            
-            System.out.println("\nFOR DEMONSTRATION: decreasing internal capacity."
-                    + " \n Old Capacity = " + elements.length
-                    + " \n New Capacity = " + newData.length
-                    + " \n Size = " + size + "\n");
-            
-            elements = newData;
-        } // If size == capacity, no need to trim
+        if (size != elements.length)
+            resize(size);
+        // If size == capacity, no need to trim
+    }
+    
+    /** Sets the listener that is notified every time the internal array is replaced (null removes it) */
+    public void setResizeListener(ResizeListener resizeListener) {
+        this.resizeListener = resizeListener;
+    }
+    
+    /** Returns: A snapshot of the resize counters (resize count, elements copied, peak capacity) */
+    public MyResizeMetrics metrics() {
+        return new MyResizeMetrics(elements.length, size, peakCapacity, resizeCount, elementsCopied);
+    }
+    
+    /** Makes contains(), indexOf() and lastIndexOf() O(1) by keeping an index from every value to its positions,
+     * for lists that are searched by value much more often than they are changed.
+     * Adding and removing at the end and set() keep the index up to date, any change that shifts elements
+     * (or sorts them) only marks it as stale, and it's rebuilt in O(n) by the next search, so a batch of changes costs one rebuild.
+     * remove(E) finds the element in O(1), but removing it is still O(n) (the elements after it are shifted),
+     * and unless it was the last element the index becomes stale.
+     * The index uses hashCode() and equals() of the elements (null elements are not indexed, searching for null scans the list) */
+    public void enableIndex() {
+        if (valueIndex == null) {
+            valueIndex = new MyGenericHashMap<>();
+            indexStale = true;
+        }
+    }
+    
+    /** Removes the index, searches scan the list again */
+    public void disableIndex() {
+        valueIndex = null;
+    }
+    
+    /** Returns: The index, after rebuilding it if the list changed since it was last up to date */
+    //Runtime complexity: O(1), O(n) for a rebuild
+    private MyGenericHashMap<E, Positions> index() {
+        if (indexStale) {
+            valueIndex = new MyGenericHashMap<>();
+            valueIndex.ensureCapacity(size);
+            for (int i = 0; i < size; i++) {
+                E e = elements[i];
+                if (e == null)
+                    continue;
+                Positions positions = valueIndex.get(e);
+                if (positions == null) {
+                    positions = new Positions();
+                    valueIndex.put(e, positions);
+                }
+                //the positions are visited in order, so every one of them goes to the end
+                positions.add(i);
+            }
+            indexStale = false;
+        }
+        return valueIndex;
+    }
+    
+    /** Records that the element is at the position (if the index is enabled and up to date) */
+    private void indexAdd(E e, int position) {
+        if (valueIndex == null || indexStale || e == null)
+            return;
+        Positions positions = valueIndex.get(e);
+        if (positions == null) {
+            positions = new Positions();
+            valueIndex.put(e, positions);
+        }
+        positions.add(position);
+    }
+    
+    /** Records that the element is no longer at the position (if the index is enabled and up to date) */
+    private void indexRemove(E e, int position) {
+        if (valueIndex == null || indexStale || e == null)
+            return;
+        Positions positions = valueIndex.get(e);
+        positions.remove(position);
+        if (positions.count == 0)
+            valueIndex.remove(e);
+    }
+    
+    //The sorted positions of one value in the list. Most values are in the list only once,
+    // so the array starts with room for a single position (a MyIntArrayList would start with 16)
+    private static final class Positions {
+        private int[] at = new int[1];
+        private int count = 0;
+        
+        /** Adds the position, keeping them sorted (the common case, adding at the end, doesn't shift anything) */
+        void add(int position) {
+            if (count == at.length)
+                at = Arrays.copyOf(at, count * 2);
+            int i = count;
+            while (i > 0 && at[i - 1] > position) {
+                at[i] = at[i - 1];
+                i--;
+            }
+            at[i] = position;
+            count++;
+        }
+        
+        /** Removes the position */
+        void remove(int position) {
+            int i = Arrays.binarySearch(at, 0, count, position);
+            System.arraycopy(at, i + 1, at, i, count - i - 1);
+            count--;
+        }
+    }
+    
+    /** Gets notified every time the internal array of a list is replaced by a larger or a smaller one */
+    @FunctionalInterface
+    public interface ResizeListener {
+        void resized(int oldCapacity, int newCapacity, int size);
     }
     
     @Override
@@ -220,6 +562,81 @@ public class MyGenericArrayList<E> implements Iterable<E>{
         return new MyArrayListIterator();
     }
     
+    /** Returns: A spliterator over the elements, a parallel stream splits it into halves of the index range */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new MyArrayListSpliterator(null, 0, -1);
+    }
+    
+    /** Returns: A sequential stream of the elements */
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    
+    /** Returns: A parallel stream of the elements, every thread works on its own part of the array */
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+    
+    //The array and the size are read when the stream actually starts (the first traversal or split),
+    // so the list can still be changed between creating a stream and running it, but not while it runs
+    private class MyArrayListSpliterator implements Spliterator<E> {
+        private E[] array;
+        private int index; // next element to visit
+        private int fence; // one past the last element to visit, -1 until first use
+        
+        MyArrayListSpliterator(E[] array, int index, int fence) {
+            this.array = array;
+            this.index = index;
+            this.fence = fence;
+        }
+        
+        private int getFence() {
+            if (fence < 0) {
+                array = elements;
+                fence = size;
+            }
+            return fence;
+        }
+        
+        @Override
+        public Spliterator<E> trySplit() {
+            int high = getFence(), low = index, middle = (low + high) >>> 1;
+            if (low >= middle)
+                return null;
+            //the first half goes to the new spliterator, this one keeps the second half
+            index = middle;
+            return new MyArrayListSpliterator(array, low, middle);
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (index >= getFence())
+                return false;
+            action.accept(array[index++]);
+            return true;
+        }
+        
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            int high = getFence();
+            E[] a = array;
+            for (int i = index; i < high; i++)
+                action.accept(a[i]);
+            index = high;
+        }
+        
+        @Override
+        public long estimateSize() {
+            return getFence() - index;
+        }
+        
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+    
     private class MyArrayListIterator
             implements Iterator<E> {
         
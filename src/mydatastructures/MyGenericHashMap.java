@@ -1,22 +1,78 @@
 package mydatastructures;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
 
 public class MyGenericHashMap<K, V> {
     
     private static final int START_CAP_DEFAULT = 4;
     private static final float LOAD_FACTOR_DEFAULT = 0.75f;
     private static final int MAX_CAP = 1 << 30;
+    // bulk loads smaller than this are not worth splitting between threads
+    private static final int PARALLEL_PUT_THRESHOLD = 1 << 14;
     
-    private int capacity;
     private final float loadFactorLimit;
     private int size = 0;
+    // counts changes that add or remove entries, iterators and cursors use it to notice that the map was changed under them
+    private int modCount = 0;
     
     // This map implementation will use 'chaining' to handle key collisions
     // this means that the map is built as an array that will hold a linked list in each slot(bucket)
     // if, after hashing, a key  needs to go to a bucket that contains a key already
     // that new key will just be added to the end of the linked list in that bucket
-    ArrayList<LinkedList<MyEntry<K, V>>> data;
+    //The linked list is built from the entries themselves, each entry points to the next entry in the same bucket,
+    // so table[i] is the first entry of bucket i (or null if the bucket is empty)
+    private MyEntry<K, V>[] table;
+    
+    // Resizing is done incrementally, instead of moving every entry at once (and making a single put() pay O(n))
+    // a resize only allocates the larger table, and then every following put()/remove() that adds or removes an entry moves a few buckets over.
+    // While that is going on the entries that were not moved yet stay in oldTable,
+    // all buckets of the oldTable below migrationIndex are already moved (oldTable is null when no resize is in progress)
+    private MyEntry<K, V>[] oldTable;
+    private int migrationIndex;
+    // number of old buckets moved per operation, it's picked so the migration always completes
+    // before the new table reaches its own load factor limit
+    private final int migrationStep;
+    
+    // Buckets that got too long are also indexed by a tree (see MyTreeBucket),
+    // trees[i] is the tree of the bucket table[i] (null if that bucket is a plain list) and oldTrees[i] of oldTable[i].
+    // The arrays themselves are only allocated once the first bucket of that table is turned into a tree
+    private MyTreeBucket<MyEntry<K, V>>[] trees;
+    private MyTreeBucket<MyEntry<K, V>>[] oldTrees;
+    
+    // Alternative storage used when the map is created in open addressing mode (null in chaining mode)
+    // see MyOpenAddressingTable for details
+    private final MyOpenAddressingTable<K, V> openTable;
+    
+    // Where the last locate() call ended, so a mapping can be added, replaced or removed right there
+    // instead of hashing the key and walking its bucket a second time
+    private MyEntry<K, V>[] locatedTable;
+    private int locatedBucket;
+    private int locatedHashCode;
+    // the entry that holds the key (null if the key is not in the map) and the entry before it in the bucket,
+    // if the key is not in the map locatedPrevious is the last entry of the bucket (null for tree buckets)
+    private MyEntry<K, V> locatedEntry;
+    private MyEntry<K, V> locatedPrevious;
+    private int locatedBucketSize;
+    // the slot returned by MyOpenAddressingTable.locate() in open addressing mode
+    private int locatedSlot;
+    // incremented by every locate(), so a lookup done by a function passed to compute() etc. can be noticed
+    private int locatedVersion;
+    
+    // call and resize counters, only allocated while statistics are enabled (see setStatisticsEnabled()),
+    // so with statistics off the only cost is a null check
+    private MyHashStatistics.Counters counters;
+    
+    // optional filter in front of get() and containsKey(), null while disabled (see enableBloomFilter()).
+    // It follows the incremental resize: the new table gets a new filter, which is filled as the buckets are moved,
+    // and until then the keys of the old buckets are looked up in oldBloomFilter
+    private MyBloomFilter<K> bloomFilter;
+    private MyBloomFilter<K> oldBloomFilter;
+    private double bloomFalsePositiveRate;
     
     /**
      * Default constructor
@@ -36,16 +92,41 @@ public class MyGenericHashMap<K, V> {
      * Constructs a map with provided starting capacity and load factor
      */
     public MyGenericHashMap(int initialCapacity, float loadFactorLimit) {
-        this.capacity = Math.min(initialCapacity, MAX_CAP);
+        this(initialCapacity, loadFactorLimit, false);
+    }
+    
+    /**
+     * Constructs a map with provided starting capacity and load factor
+     * If openAddressing is true, entries are kept in flat arrays and collisions are resolved by linear probing
+     * instead of chaining (null keys are not supported in that mode)
+     */
+    public MyGenericHashMap(int initialCapacity, float loadFactorLimit, boolean openAddressing) {
+        int capacity = Math.max(1, Math.min(initialCapacity, MAX_CAP));
         //set bounds for load factor between 0.1 and 1
         this.loadFactorLimit = Math.min(Math.max(0.1f, loadFactorLimit),1f);
+        //the table doubles, so at least (1 / loadFactor) buckets have to be moved per operation
+        // to be done by the time the new table is full, +1 to stay on the safe side
+        this.migrationStep = (int) Math.ceil(1 / this.loadFactorLimit) + 1;
         
-        data = new ArrayList<>();
-        //need to create these eagerly to avoid mixing arrays with generic types, ouch
-        for (int i = 0; i < capacity; i++) {
-            LinkedList<MyEntry<K, V>> currentBucket = new LinkedList<>();
-            data.add(currentBucket);
+        if (openAddressing) {
+            openTable = new MyOpenAddressingTable<>(capacity, this.loadFactorLimit);
+            return;
         }
+        openTable = null;
+        
+        table = createTable(capacity);
+    }
+    
+    //arrays and generic types don't mix well, see the note on the 'elements' declaration in MyGenericArrayList
+    //it's safe here because the table is private and only ever holds entries of this map
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> MyEntry<K, V>[] createTable(int capacity) {
+        return (MyEntry<K, V>[]) new MyEntry[capacity];
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> MyTreeBucket<MyEntry<K, V>>[] createTrees(int capacity) {
+        return (MyTreeBucket<MyEntry<K, V>>[]) new MyTreeBucket[capacity];
     }
     
     /**
@@ -54,119 +135,713 @@ public class MyGenericHashMap<K, V> {
      * or the value added(if not)
      */
     public V put(K key, V value) {
-        //if the key is already in the map, find the entry that contains it
-        // and replace the associated value
-        if (get(key) != null) {
-            int bucketIndex = hash(key);
-            LinkedList<MyEntry<K, V>> keyBucket = data.get(bucketIndex);
-            for (MyEntry<K, V> entry : keyBucket)
-                
-                if (entry.getKey().equals(key)) {
-                    V oldValue = entry.getValue();
-                    entry.value = value;
-                    return oldValue;
-                }
+        if (counters != null)
+            counters.puts++;
+        //if the key is already in the map, replace the associated value in the entry that was found
+        if (locate(key))
+            return setLocatedValue(value);
+        addLocated(key, value);
+        return value;
+    }
+        
+    /**
+     * Adds the mapping only if the key is not in the map (or is mapped to null)
+     * Returns: the value that was already mapped to the key, or null if the new value was added
+     */
+    public V putIfAbsent(K key, V value) {
+        if (counters != null)
+            counters.puts++;
+        if (locate(key)) {
+            V currentValue = locatedValue();
+            if (currentValue != null)
+                return currentValue;
+            setLocatedValue(value);
+        } else {
+            addLocated(key, value);
         }
+        return null;
+    }
         
-        // Ensure that proper load factor is being maintained
-        if (size >= capacity * loadFactorLimit) {
-            if (capacity == MAX_CAP)
-                throw new RuntimeException("Maximum capacity reached");
-            //if the new entry pushes the load factor beyond the set threshold
-            // create a new larger array and rehash ALL entries, expensive operation
-            rehash();
+    /**
+     * If the key is not in the map (or is mapped to null), maps it to the value returned by the function,
+     * nothing is added if the function returns null
+     * Returns: the current (existing or computed) value, or null if there is none
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        if (counters != null)
+            counters.puts++;
+        Objects.requireNonNull(mappingFunction);
+        boolean found = locate(key);
+        if (found) {
+            V currentValue = locatedValue();
+            if (currentValue != null)
+                return currentValue;
         }
         
-        MyEntry<K, V> newEntry = new MyEntry<>(key, value);
+        int expectedModCount = modCount;
+        int expectedVersion = locatedVersion;
+        V newValue = mappingFunction.apply(key);
+        relocateAfterCall(key, expectedModCount, expectedVersion);
+        if (newValue == null)
+            return null;
+        if (found)
+            setLocatedValue(newValue);
+        else
+            addLocated(key, newValue);
+        return newValue;
+    }
         
-        int bucketIndex = hash(key);
+    /**
+     * If the key is mapped to a non null value, replaces it with the value returned by the function,
+     * the mapping is removed if the function returns null
+     * Returns: the new value, or null if there is none
+     */
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (counters != null)
+            counters.puts++;
+        Objects.requireNonNull(remappingFunction);
+        if (!locate(key))
+            return null;
+        V oldValue = locatedValue();
+        if (oldValue == null)
+            return null;
         
-        // Add the new entry to the linked list in this bucket
-        data.get(bucketIndex).add(newEntry);
-        size++;
+        int expectedModCount = modCount;
+        int expectedVersion = locatedVersion;
+        V newValue = remappingFunction.apply(key, oldValue);
+        relocateAfterCall(key, expectedModCount, expectedVersion);
+        if (newValue == null)
+            removeLocated();
+        else
+            setLocatedValue(newValue);
+        return newValue;
+    }
+    
+    /**
+     * Maps the key to the value returned by the function, which gets the current value (or null if there is none),
+     * the mapping is removed (or not added) if the function returns null
+     * Returns: the new value, or null if there is none
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (counters != null)
+            counters.puts++;
+        Objects.requireNonNull(remappingFunction);
+        boolean found = locate(key);
+        V oldValue = found ? locatedValue() : null;
         
-        return value;
+        int expectedModCount = modCount;
+        int expectedVersion = locatedVersion;
+        V newValue = remappingFunction.apply(key, oldValue);
+        relocateAfterCall(key, expectedModCount, expectedVersion);
+        if (newValue == null) {
+            if (found)
+                removeLocated();
+        } else if (found) {
+            setLocatedValue(newValue);
+        } else {
+            addLocated(key, newValue);
+        }
+        return newValue;
+    }
+    
+    /**
+     * If the key is not in the map (or is mapped to null), maps it to the provided value,
+     * otherwise replaces the current value with the result of the function (called with the current and the provided value),
+     * the mapping is removed if the function returns null
+     * Returns: the new value, or null if the mapping was removed
+     */
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (counters != null)
+            counters.puts++;
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        boolean found = locate(key);
+        V oldValue = found ? locatedValue() : null;
+        if (oldValue == null) {
+            if (found)
+                setLocatedValue(value);
+            else
+                addLocated(key, value);
+            return value;
+        }
+        
+        int expectedModCount = modCount;
+        int expectedVersion = locatedVersion;
+        V newValue = remappingFunction.apply(oldValue, value);
+        relocateAfterCall(key, expectedModCount, expectedVersion);
+        if (newValue == null)
+            removeLocated();
+        else
+            setLocatedValue(newValue);
+        return newValue;
     }
     
     /**
      * Removes the entry that contains the provided key
      */
     public void remove(K key) {
-        int keyBucketIndex = hash(key);
-        
-        LinkedList<MyEntry<K, V>> keyBucket = data.get(keyBucketIndex);
-        //go through the bucket and find the entry that has the key
-        for (MyEntry<K, V> currentEntry : keyBucket)
-            if (key.equals(currentEntry.getKey())) {
-                keyBucket.remove(currentEntry);
-                size--;
-                break;
+        if (counters != null)
+            counters.removes++;
+        if (locate(key))
+            removeLocated();
+    }
+        
+    /**
+     * Looks up the key and remembers where the lookup ended (see the 'located' fields)
+     * Returns: true if the key is in the map
+     */
+    private boolean locate(K key) {
+        locatedVersion++;
+        if (openTable != null) {
+            locatedSlot = openTable.locate(key);
+            return locatedSlot >= 0;
+        }
+        
+        locatedHashCode = Objects.hashCode(key);
+        locatedTable = tableFor(locatedHashCode);
+        locatedBucket = hash(locatedHashCode, locatedTable.length);
+        locatedPrevious = null;
+        locatedBucketSize = 0;
+        MyTreeBucket<MyEntry<K, V>> tree = treeAt(locatedTable, locatedBucket);
+        if (tree != null) {
+            //a new entry will be added to the front of the list, so the tree bucket doesn't need to be walked
+            locatedEntry = findInTree(tree, locatedTable[locatedBucket], locatedHashCode, key);
+            return locatedEntry != null;
+        }
+        
+        for (MyEntry<K, V> entry = locatedTable[locatedBucket]; entry != null; entry = entry.next) {
+            if (entry.hashCode == locatedHashCode && Objects.equals(entry.key, key)) {
+                locatedEntry = entry;
+                return true;
             }
+            locatedPrevious = entry;
+            locatedBucketSize++;
+        }
+        locatedEntry = null;
+        return false;
     }
     
     /**
-     * Removes all data from this map
+     * Returns: The value of the mapping found by the last locate()
      */
-    public void clear() {
-        size = 0;
-        for (LinkedList<MyEntry<K, V>> currentBucket : data) {
-            currentBucket.clear();
+    private V locatedValue() {
+        if (openTable != null)
+            return openTable.valueAt(locatedSlot);
+        return locatedEntry.value;
+    }
+    
+    /**
+     * Replaces the value of the mapping found by the last locate()
+     * Returns: the old value
+     */
+    private V setLocatedValue(V value) {
+        if (openTable != null)
+            return openTable.setValueAt(locatedSlot, value);
+        V oldValue = locatedEntry.value;
+        locatedEntry.value = value;
+        return oldValue;
+    }
+    
+    /**
+     * Checks that a function provided by the caller didn't change the map,
+     * and repeats the lookup if the function used this map in a way that replaced the remembered one
+     */
+    private void relocateAfterCall(K key, int expectedModCount, int expectedVersion) {
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+        //nothing was added or removed, so the key is still found (or not) in the same place
+        if (locatedVersion != expectedVersion)
+            locate(key);
+    }
+    
+    /**
+     * Adds a new entry for the key that the last locate() didn't find
+     */
+    private void addLocated(K key, V value) {
+        modCount++;
+        if (openTable != null) {
+            int oldCapacity = openTable.capacity();
+            openTable.insertAt(-locatedSlot - 1, key, value);
+            if (bloomFilter != null) {
+                //the table rebuilds itself all at once when it grows, and so does the filter
+                if (openTable.capacity() != oldCapacity)
+                    rebuildBloomFilter();
+                else
+                    addToBloomFilter(bloomFilter, key.hashCode());
+            }
+            return;
+        }
+        
+        //Buckets are moved to the new table only when an entry is added or removed.
+        // Replacing a value doesn't change the layout of the map, so that is safe to do while iterating over it
+        if (oldTable != null || size >= table.length * loadFactorLimit) {
+            MyEntry<K, V>[] keyTable = locatedTable;
+            migrateStep();
+            // Ensure that proper load factor is being maintained
+            if (size >= table.length * loadFactorLimit) {
+                if (table.length == MAX_CAP)
+                    throw new RuntimeException("Maximum capacity reached");
+                //if the new entry pushes the load factor beyond the set threshold
+                // create a new larger array, the entries will be moved over gradually
+                rehash();
+            }
+            //if the bucket got moved in the meantime it has to be looked up again
+            if (tableFor(locatedHashCode) != keyTable)
+                locate(key);
         }
+        
+        MyEntry<K, V>[] keyTable = locatedTable;
+        int bucketIndex = locatedBucket;
+        MyTreeBucket<MyEntry<K, V>> tree = treeAt(keyTable, bucketIndex);
+        if (tree != null) {
+            MyTreeBucketEntry<K, V> newEntry = new MyTreeBucketEntry<>(key, value, locatedHashCode);
+            newEntry.next = keyTable[bucketIndex];
+            if (newEntry.next != null)
+                ((MyTreeBucketEntry<K, V>) newEntry.next).prev = newEntry;
+            keyTable[bucketIndex] = newEntry;
+            tree.insertEntry(newEntry);
+        } else {
+            // Add the new entry to the end of the linked list in this bucket
+            MyEntry<K, V> newEntry = new MyEntry<>(key, value, locatedHashCode);
+            if (locatedPrevious == null)
+                keyTable[bucketIndex] = newEntry;
+            else
+                locatedPrevious.next = newEntry;
+            //only buckets of the current table are turned into trees, old buckets are going to be moved soon anyway
+            if (locatedBucketSize + 1 >= MyTreeBucket.TREEIFY_THRESHOLD && keyTable == table
+                    && table.length >= MyTreeBucket.MIN_TREEIFY_CAPACITY)
+                treeify(bucketIndex);
+        }
+        size++;
+        if (bloomFilter != null)
+            addToBloomFilter(keyTable == table ? bloomFilter : oldBloomFilter, locatedHashCode);
+        forgetLocated();
     }
     
     /**
-     * Returns: A set of all keys currently in this map
+     * Removes the entry found by the last locate()
      */
-    public Set<K> keySet() {
-        Set<K> set = new HashSet<>();
+    private void removeLocated() {
+        modCount++;
+        if (openTable != null) {
+            openTable.removeSlot(locatedSlot);
+            return;
+        }
         
-        for (LinkedList<MyEntry<K, V>> currentBucket : data) {
-            for (MyEntry<K, V> currentEntry : currentBucket)
-                set.add(currentEntry.getKey());
+        MyTreeBucket<MyEntry<K, V>> tree = treeAt(locatedTable, locatedBucket);
+        if (tree != null) {
+            removeTreeEntry(locatedTable, locatedBucket, tree, (MyTreeBucketEntry<K, V>) locatedEntry);
+        } else {
+            //unlink the entry by making the previous one(or the bucket itself) skip over it
+            if (locatedPrevious == null)
+                locatedTable[locatedBucket] = locatedEntry.next;
+            else
+                locatedPrevious.next = locatedEntry.next;
+            size--;
+        }
+        forgetLocated();
+        migrateStep();
+    }
+    
+    //the remembered lookup is only valid until the layout changes, dropping it also lets removed entries and old tables be collected
+    private void forgetLocated() {
+        locatedTable = null;
+        locatedEntry = null;
+        locatedPrevious = null;
+    }
+    
+    /**
+     * Unlinks the provided entry from its bucket
+     */
+    //doesn't move any buckets, so it can be used by a cursor in the middle of a scan
+    private void removeEntry(MyEntry<K, V> entry) {
+        MyEntry<K, V>[] keyTable = tableFor(entry.hashCode);
+        int bucketIndex = hash(entry.hashCode, keyTable.length);
+        modCount++;
+        
+        MyTreeBucket<MyEntry<K, V>> tree = treeAt(keyTable, bucketIndex);
+        if (tree != null) {
+            removeTreeEntry(keyTable, bucketIndex, tree, (MyTreeBucketEntry<K, V>) entry);
+            return;
         }
         
-        return set;
+        //unlink the entry by making the previous one(or the bucket itself) skip over it
+        if (keyTable[bucketIndex] == entry) {
+            keyTable[bucketIndex] = entry.next;
+        } else {
+            MyEntry<K, V> previous = keyTable[bucketIndex];
+            while (previous.next != entry)
+                previous = previous.next;
+            previous.next = entry.next;
+        }
+        size--;
+    }
+    
+    /**
+     * Adds all mappings from the provided map into this map
+     */
+    public void putAll(Map<? extends K, ? extends V> map) {
+        Object[] keys = new Object[map.size()];
+        Object[] values = new Object[map.size()];
+        int count = 0;
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            keys[count] = entry.getKey();
+            values[count++] = entry.getValue();
+        }
+        putAll(keys, values, count);
     }
     
     /**
-     * Return: A set of all(unique) values currently in this map
+     * Adds all mappings from the provided map into this map
      */
-    public Set<V> values() {
-        Set<V> set = new HashSet<>();
-        for (LinkedList<MyEntry<K, V>> currentBucket : data) {
-            for (MyEntry<K, V> currentEntry : currentBucket)
-                set.add(currentEntry.getValue());
+    public void putAll(MyGenericHashMap<? extends K, ? extends V> map) {
+        Object[] keys = new Object[map.size()];
+        Object[] values = new Object[map.size()];
+        int count = 0;
+        MyGenericHashMap<? extends K, ? extends V>.MyCursor cursor = map.cursor();
+        while (cursor.advance()) {
+            keys[count] = cursor.key();
+            values[count++] = cursor.value();
         }
+        putAll(keys, values, count);
+    }
+    
+    /**
+     * Adds a mapping for every key in the keys array, the value is the one with the same index in the values array
+     * (if a key is in the array more than once, the value of the last one is kept)
+     */
+    public void putAll(K[] keys, V[] values) {
+        if (keys.length != values.length)
+            throw new IllegalArgumentException("Keys and values must have the same length");
+        putAll(keys, values, keys.length);
+    }
+    
+    /**
+     * Returns: A collector that puts the elements of a stream into a new map, using the provided functions
+     * to get the key and the value of each element (for a duplicate key, the value of the later element is kept)
+     */
+    //The elements are collected first and then added with putAll(), so the table is sized only once
+    // and a large stream is put into the map in parallel
+    public static <T, K, V> Collector<T, ?, MyGenericHashMap<K, V>> toMyGenericHashMap(
+            Function<? super T, ? extends K> keyMapper, Function<? super T, ? extends V> valueMapper) {
+        return Collector.<T, PendingMappings<K, V>, MyGenericHashMap<K, V>>of(
+                PendingMappings::new,
+                (pending, element) -> {
+                    pending.keys.add(keyMapper.apply(element));
+                    pending.values.add(valueMapper.apply(element));
+                },
+                (first, second) -> {
+                    first.keys.addAll(second.keys);
+                    first.values.addAll(second.values);
+                    return first;
+                },
+                pending -> {
+                    MyGenericHashMap<K, V> map = new MyGenericHashMap<>();
+                    map.putAll(pending.keys.toArray(), pending.values.toArray(), pending.keys.size());
+                    return map;
+                });
+    }
+    
+    /**
+     * Mappings gathered by the collector, before they are added to the map
+     */
+    private static class PendingMappings<K, V> {
+        final ArrayList<K> keys = new ArrayList<>();
+        final ArrayList<V> values = new ArrayList<>();
+    }
+    
+    /**
+     * Adds the first count keys with their values, the table is resized (at most) once, before anything is added
+     */
+    @SuppressWarnings("unchecked") // the arrays only ever hold K keys and V values, they are Object[] only to allow copying
+    private void putAll(Object[] keys, Object[] values, int count) {
+        if (count == 0)
+            return;
+        //an upper bound, some of the keys might already be in the map (or be in the arrays more than once)
+        ensureCapacity((int) Math.min((long) size() + count, MAX_CAP));
         
-        return set;
+        if (openTable != null || count < PARALLEL_PUT_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            for (int i = 0; i < count; i++)
+                put((K) keys[i], (V) values[i]);
+            return;
+        }
+        //the parallel path doesn't go through put(), so the keys are counted here
+        if (counters != null)
+            counters.puts += count;
+        parallelPutAll(keys, values, count);
     }
     
     /**
-     * Returns: A set of all entries currently in this map
+     * Adds the mappings using all threads of the common fork-join pool
      */
-    public Set<MyEntry<K, V>> entrySet() {
+    //The buckets are split into ranges (partitions), one task puts all the mappings of one range.
+    // Tasks never touch the same bucket so they don't need any locking.
+    //The mappings are sorted by partition first, keeping their original order within a partition,
+    // so when a key is in the arrays more than once the last value still wins, same as with put() in a loop
+    @SuppressWarnings("unchecked")
+    private void parallelPutAll(Object[] keys, Object[] values, int count) {
+        //the whole table has to be in one place, buckets of a resize in progress would be in either table
+        while (oldTable != null)
+            migrateStep();
+        modCount++;
+        
+        int capacity = table.length;
+        int partitions = Math.min(capacity, ForkJoinPool.getCommonPoolParallelism() * 4);
+        int[] hashCodes = new int[count];
+        int[] buckets = new int[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            hashCodes[i] = Objects.hashCode(keys[i]);
+            buckets[i] = hash(hashCodes[i], capacity);
+        });
+        
+        // counting sort of the indexes by partition, partitionStart[p] is where the indexes of partition p begin
+        int[] partitionStart = new int[partitions + 1];
+        for (int i = 0; i < count; i++)
+            partitionStart[partitionOf(buckets[i], partitions, capacity) + 1]++;
+        for (int p = 0; p < partitions; p++)
+            partitionStart[p + 1] += partitionStart[p];
+        int[] order = new int[count];
+        int[] nextPosition = Arrays.copyOf(partitionStart, partitions);
+        for (int i = 0; i < count; i++)
+            order[nextPosition[partitionOf(buckets[i], partitions, capacity)]++] = i;
         
-        Set<MyEntry<K, V>> allEntries = new HashSet<>();
+        int[] added = new int[partitions];
+        IntStream.range(0, partitions).parallel().forEach(p -> {
+            for (int j = partitionStart[p]; j < partitionStart[p + 1]; j++) {
+                int i = order[j];
+                int bucketSize = putInBucket(buckets[i], hashCodes[i], (K) keys[i], (V) values[i]);
+                if (bucketSize >= 0)
+                    added[p]++;
+                if (bucketSize >= MyTreeBucket.TREEIFY_THRESHOLD && capacity >= MyTreeBucket.MIN_TREEIFY_CAPACITY) {
+                    //the trees array is shared by all tasks, so only creating it needs a lock,
+                    // the tree itself belongs to a bucket of this partition
+                    MyTreeBucket<MyEntry<K, V>>[] tableTrees;
+                    synchronized (this) {
+                        if (trees == null)
+                            trees = createTrees(capacity);
+                        tableTrees = trees;
+                    }
+                    tableTrees[buckets[i]] = buildTree(table, buckets[i]);
+                }
+            }
+        });
+        
+        for (int partitionAdded : added)
+            size += partitionAdded;
+        //setting bits of the filter from several threads at once could lose some of them, so it's filled afterwards
+        if (bloomFilter != null)
+            rebuildBloomFilter();
+    }
+    
+    private static int partitionOf(int bucketIndex, int partitions, int capacity) {
+        return (int) ((long) bucketIndex * partitions / capacity);
+    }
+    
+    /**
+     * Puts the mapping into the specified bucket of the current table, without resizing or counting it into size
+     * Returns: -1 if the key was already in the bucket (only the value got replaced),
+     * otherwise the number of entries in the bucket after adding the new one (0 if the bucket is a tree bucket)
+     */
+    private int putInBucket(int bucketIndex, int hashCode, K key, V value) {
+        MyTreeBucket<MyEntry<K, V>> tree = treeAt(table, bucketIndex);
+        if (tree != null) {
+            MyEntry<K, V> entry = findInTree(tree, table[bucketIndex], hashCode, key);
+            if (entry != null) {
+                entry.value = value;
+                return -1;
+            }
+            MyTreeBucketEntry<K, V> newEntry = new MyTreeBucketEntry<>(key, value, hashCode);
+            newEntry.next = table[bucketIndex];
+            ((MyTreeBucketEntry<K, V>) newEntry.next).prev = newEntry;
+            table[bucketIndex] = newEntry;
+            tree.insertEntry(newEntry);
+            return 0;
+        }
         
-        for (LinkedList<MyEntry<K, V>> currentBucket : data)
-            allEntries.addAll(currentBucket);
+        MyEntry<K, V> last = null;
+        int bucketSize = 0;
+        for (MyEntry<K, V> entry = table[bucketIndex]; entry != null; entry = entry.next) {
+            if (entry.hashCode == hashCode && Objects.equals(entry.key, key)) {
+                entry.value = value;
+                return -1;
+            }
+            last = entry;
+            bucketSize++;
+        }
+        MyEntry<K, V> newEntry = new MyEntry<>(key, value, hashCode);
+        if (last == null)
+            table[bucketIndex] = newEntry;
+        else
+            last.next = newEntry;
+        return bucketSize + 1;
+    }
+    
+    /**
+     * Makes sure the map can hold the specified number of mappings without resizing again
+     */
+    //Runtime complexity: O(n), every entry is moved to the new table right away
+    public void ensureCapacity(int expectedSize) {
+        if (openTable != null) {
+            int oldCapacity = openTable.capacity();
+            openTable.ensureCapacity(expectedSize);
+            if (openTable.capacity() != oldCapacity) {
+                modCount++;
+                if (bloomFilter != null)
+                    rebuildBloomFilter();
+            }
+            return;
+        }
         
-        return allEntries;
+        long needed = Math.min((long) Math.ceil(expectedSize / (double) loadFactorLimit), MAX_CAP);
+        if (table.length >= needed)
+            return;
+        modCount++;
+        
+        //the table is allocated once at its final size, and every entry goes straight to its bucket there,
+        // a resize that is still in progress is finished along the way (its moved buckets are already empty)
+        long start = counters != null ? System.nanoTime() : 0;
+        MyEntry<K, V>[] newTable = createTable((int) needed);
+        moveAll(table, newTable);
+        if (oldTable != null)
+            moveAll(oldTable, newTable);
+        table = newTable;
+        trees = null;
+        oldTable = null;
+        oldTrees = null;
+        oldBloomFilter = null;
+        migrationIndex = 0;
+        
+        //the old trees don't fit the new buckets, the buckets that are still long enough get new ones
+        if (table.length >= MyTreeBucket.MIN_TREEIFY_CAPACITY) {
+            for (int i = 0; i < table.length; i++) {
+                int bucketSize = 0;
+                for (MyEntry<K, V> entry = table[i]; entry != null; entry = entry.next)
+                    bucketSize++;
+                if (bucketSize >= MyTreeBucket.TREEIFY_THRESHOLD)
+                    treeify(i);
+            }
+        }
+        if (bloomFilter != null)
+            rebuildBloomFilter();
+        if (counters != null) {
+            counters.rehashes++;
+            counters.rehashNanos += System.nanoTime() - start;
+        }
+    }
+    
+    /**
+     * Moves all entries of the provided table into the new table, leaving the provided table empty
+     */
+    //Unlike moveBucket() the new capacity can be anything, so each entry is hashed again.
+    //The entries are relinked, not copied, each one is put in front of its new bucket
+    private static <K, V> void moveAll(MyEntry<K, V>[] from, MyEntry<K, V>[] to) {
+        for (int i = 0; i < from.length; i++) {
+            MyEntry<K, V> entry = from[i];
+            while (entry != null) {
+                MyEntry<K, V> next = entry.next;
+                int bucketIndex = hash(entry.hashCode, to.length);
+                entry.next = to[bucketIndex];
+                to[bucketIndex] = entry;
+                entry = next;
+            }
+            from[i] = null;
+        }
+    }
+    
+    /**
+     * Removes all data from this map
+     */
+    public void clear() {
+        modCount++;
+        if (bloomFilter != null) {
+            bloomFilter.clear();
+            oldBloomFilter = null;
+        }
+        if (openTable != null) {
+            openTable.clear();
+            return;
+        }
+        
+        size = 0;
+        //any resize that was in progress can be dropped, there is nothing left to move
+        oldTable = null;
+        oldTrees = null;
+        trees = null;
+        Arrays.fill(table, null);
+    }
+    
+    //The three views below don't copy anything, they read the map directly so they always show its current content.
+    // Removing an element from a view (or through a view's iterator) removes the mapping from the map,
+    // but adding to a view is not supported. Iterating over a view and changing the map
+    // in any other way than through that iterator (or replacing values) ends with a ConcurrentModificationException
+    
+    /**
+     * Returns: A view of all keys currently in this map
+     */
+    public Set<K> keySet() {
+        return new KeySetView();
+    }
+    
+    /**
+     * Return: A view of all values currently in this map,
+     * a value that belongs to more than one key appears more than once
+     */
+    public Collection<V> values() {
+        return new ValuesView();
+    }
+    
+    /**
+     * Returns: A view of all entries currently in this map, setValue() on an entry changes the value in the map
+     */
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new EntrySetView();
+    }
+    
+    /**
+     * Returns: A new cursor, positioned before the first mapping of this map
+     */
+    public MyCursor cursor() {
+        return new MyCursor();
     }
     
     /**
      * Returns: The value that is connected to the provided key
      */
     //Runtime complexity: O(1) - in theory assuming a good hash function, key collision handling and load factor
-    // but if that's not the case it can be much slower up to O(n) if all keys are in the same bucket
+    // but if that's not the case it can be slower, up to O(log n) if all keys are in the same bucket (see MyTreeBucket)
     public V get(K key) {
+        if (counters != null)
+            counters.gets++;
+        if (openTable != null) {
+            //a null key is left to the table, which doesn't support it
+            if (bloomFilter != null && key != null && !bloomFilter.mightContainHash(key.hashCode()))
+                return null;
+            return openTable.get(key);
+        }
+        
+        MyEntry<K, V> entry = findEntry(key);
+        return entry == null ? null : entry.getValue();
+    }
+    
+    /**
+     * Returns: The entry that holds the provided key, or null if the key is not in this map
+     */
+    private MyEntry<K, V> findEntry(K key) {
+        int hashCode = Objects.hashCode(key);
         //find out in which bucket the key is
-        int bucketIndex = hash(key);
+        MyEntry<K, V>[] keyTable = tableFor(hashCode);
+        //most keys that are not in the map are rejected here, by looking at a single block of the filter
+        if (bloomFilter != null && !(keyTable == table ? bloomFilter : oldBloomFilter).mightContainHash(hashCode))
+            return null;
+        int bucketIndex = hash(hashCode, keyTable.length);
+        MyTreeBucket<MyEntry<K, V>> tree = treeAt(keyTable, bucketIndex);
+        if (tree != null)
+            return findInTree(tree, keyTable[bucketIndex], hashCode, key);
         // go through that bucket to look for the Entry with that key
-        LinkedList<MyEntry<K, V>> keyBucket = data.get(bucketIndex);
-        for (MyEntry<K, V> currentEntry : keyBucket)
-            if (key.equals(currentEntry.getKey()))
-                return currentEntry.getValue();
+        //comparing the saved hash codes first is cheap, and skips most equals() calls
+        for (MyEntry<K, V> currentEntry = keyTable[bucketIndex]; currentEntry != null; currentEntry = currentEntry.next)
+            if (currentEntry.hashCode == hashCode && Objects.equals(key, currentEntry.key))
+                return currentEntry;
         
         return null;
     }
@@ -176,7 +851,15 @@ public class MyGenericHashMap<K, V> {
      */
     //Runtime complexity: O(1)
     public boolean containsKey(K key) {
-        return get(key) != null;
+        if (counters != null)
+            counters.gets++;
+        if (openTable != null) {
+            if (bloomFilter != null && key != null && !bloomFilter.mightContainHash(key.hashCode()))
+                return false;
+            return openTable.containsKey(key);
+        }
+        //null values are allowed, so the entry itself has to be looked for
+        return findEntry(key) != null;
     }
     
     /**
@@ -184,13 +867,14 @@ public class MyGenericHashMap<K, V> {
      */
     //Runtime complexity: O(n)
     public boolean containsValue(V value) {
-        for (int i = 0; i < capacity; i++) {
-            //go down the array and compare each value to the desired value
-            for (LinkedList<MyEntry<K, V>> currentBucket : data) {
-                for (MyEntry<K, V> entry : currentBucket)
-                    if (entry.getValue().equals(value))
-                        return true;
-            }
+        if (openTable != null)
+            return openTable.containsValue(value);
+        
+        //go down the array and compare each value to the desired value
+        for (int i = 0; i < bucketCount(); i++) {
+            for (MyEntry<K, V> entry = bucketHead(i); entry != null; entry = entry.next)
+                if (Objects.equals(entry.getValue(), value))
+                    return true;
         }
         return false;
     }
@@ -198,54 +882,369 @@ public class MyGenericHashMap<K, V> {
     /**
      * Basic hashing function
      */
-    private int hash(K key) {
+    private static int hash(int hashCode, int capacity) {
         //Focus of this class is to demonstrate how a Map can be implemented, not to demonstrate various hashing functions
         // therefore the most basic one will be sufficient for this example
-        return Math.abs(Objects.hashCode(key) % capacity);
+        return Math.abs(hashCode % capacity);
+    }
+    
+    /**
+     * Returns: The table that currently holds the bucket for the specified hash code
+     */
+    //while a resize is in progress a key is in the old table until its old bucket gets moved
+    private MyEntry<K, V>[] tableFor(int hashCode) {
+        if (oldTable != null && hash(hashCode, oldTable.length) >= migrationIndex)
+            return oldTable;
+        return table;
     }
     
     /**
      * Rehash the map
      */
+    //Only allocates the new (doubled) table here, entries are moved over to it by migrateStep()
     private void rehash() {
-        Set<MyEntry<K, V>> temp = entrySet(); // Temporarily save entries
-        capacity = capacity << 1; // Double capacity
-        //Clear out all the buckets because all keys will be rehashed
-        //so the same entry might go in a different bucket now
-        for (LinkedList<MyEntry<K, V>> currentBucket : data) {
-            currentBucket.clear();
+        //just in case the previous resize isn't done yet, finish it first
+        //(it can't happen with the migrationStep picked in the constructor, but it's cheap to make sure)
+        while (oldTable != null)
+            migrateStep();
+        
+        long start = counters != null ? System.nanoTime() : 0;
+        oldTable = table;
+        oldTrees = trees;
+        table = createTable(table.length << 1);
+        trees = null;
+        migrationIndex = 0;
+        if (bloomFilter != null) {
+            oldBloomFilter = bloomFilter;
+            bloomFilter = newBloomFilter(table.length);
+        }
+        if (counters != null) {
+            counters.rehashes++;
+            counters.rehashNanos += System.nanoTime() - start;
+        }
+    }
+        
+    /**
+     * Moves the next few buckets from the old table into the new table, if a resize is in progress
+     */
+    //Runtime complexity: O(1) on average, the number of buckets moved is fixed
+    private void migrateStep() {
+        if (oldTable == null)
+            return;
+        
+        long start = counters != null ? System.nanoTime() : 0;
+        int end = Math.min(migrationIndex + migrationStep, oldTable.length);
+        for (; migrationIndex < end; migrationIndex++)
+            moveBucket(migrationIndex);
+        
+        if (migrationIndex == oldTable.length) {
+            oldTable = null; // all moved, the resize is done
+            oldTrees = null;
+            oldBloomFilter = null;
+        }
+        //moving the buckets is part of the resize, it's just spread over many operations
+        if (counters != null)
+            counters.rehashNanos += System.nanoTime() - start;
+    }
+    
+    /**
+     * Moves all entries of one old bucket into the new table
+     */
+    //Since the table doubles, entries from old bucket i can only go to the new bucket i or i + oldCapacity
+    // (those two buckets are still empty, new keys never go there before bucket i has been moved).
+    //The entries are relinked, not copied, so moving doesn't allocate anything and the order within the bucket is kept
+    private void moveBucket(int oldIndex) {
+        MyEntry<K, V> lowHead = null, lowTail = null, highHead = null, highTail = null;
+        int lowSize = 0, highSize = 0;
+        MyEntry<K, V> entry = oldTable[oldIndex];
+        while (entry != null) {
+            MyEntry<K, V> next = entry.next;
+            entry.next = null;
+            if (bloomFilter != null)
+                bloomFilter.addHash(entry.hashCode);
+            if (hash(entry.hashCode, table.length) == oldIndex) {
+                if (lowTail == null)
+                    lowHead = entry;
+                else
+                    lowTail.next = entry;
+                lowTail = entry;
+                lowSize++;
+            } else {
+                if (highTail == null)
+                    highHead = entry;
+                else
+                    highTail.next = entry;
+                highTail = entry;
+                highSize++;
+            }
+            entry = next;
+        }
+        oldTable[oldIndex] = null;
+        table[oldIndex] = lowHead;
+        table[oldIndex + oldTable.length] = highHead;
+        
+        //a tree bucket is split in two, each half gets its own tree if it's still long enough
+        if (oldTrees != null && oldTrees[oldIndex] != null) {
+            oldTrees[oldIndex] = null;
+            if (lowSize > MyTreeBucket.UNTREEIFY_THRESHOLD)
+                treeify(oldIndex);
+            if (highSize > MyTreeBucket.UNTREEIFY_THRESHOLD)
+                treeify(oldIndex + oldTable.length);
+        }
+    }
+    
+    /**
+     * Returns: The tree of the specified bucket, or null if that bucket is a plain list
+     */
+    private MyTreeBucket<MyEntry<K, V>> treeAt(MyEntry<K, V>[] keyTable, int bucketIndex) {
+        MyTreeBucket<MyEntry<K, V>>[] keyTrees = keyTable == table ? trees : oldTrees;
+        return keyTrees == null ? null : keyTrees[bucketIndex];
+    }
+    
+    /**
+     * Turns the bucket with the specified index in the current table into a tree bucket
+     */
+    private void treeify(int bucketIndex) {
+        if (trees == null)
+            trees = createTrees(table.length);
+        trees[bucketIndex] = buildTree(table, bucketIndex);
+    }
+    
+    /**
+     * Returns: A tree of all entries in the specified bucket
+     */
+    //Entries of a tree bucket also need a link to the previous entry,
+    // so plain entries are replaced with MyTreeBucketEntry objects here (that also sets all the 'prev' links)
+    private static <K, V> MyTreeBucket<MyEntry<K, V>> buildTree(MyEntry<K, V>[] keyTable, int bucketIndex) {
+        MyTreeBucket<MyEntry<K, V>> tree = new MyTreeBucket<>();
+        MyTreeBucketEntry<K, V> previous = null;
+        for (MyEntry<K, V> entry = keyTable[bucketIndex]; entry != null; entry = entry.next) {
+            MyTreeBucketEntry<K, V> treeEntry;
+            if (entry instanceof MyTreeBucketEntry) {
+                treeEntry = (MyTreeBucketEntry<K, V>) entry;
+            } else {
+                treeEntry = new MyTreeBucketEntry<>(entry.key, entry.value, entry.hashCode);
+                treeEntry.next = entry.next;
+            }
+            treeEntry.prev = previous;
+            if (previous == null)
+                keyTable[bucketIndex] = treeEntry;
+            else
+                previous.next = treeEntry;
+            tree.insertEntry(treeEntry);
+            previous = treeEntry;
         }
-        //add more buckets to match capacity.
-        while (data.size() < capacity) {
-            LinkedList<MyEntry<K, V>> newBucket = new LinkedList<>();
-            data.add(newBucket);
+        return tree;
+    }
+    
+    /**
+     * Returns: The entry with the provided key in a tree bucket, or null if the key is not in that bucket
+     */
+    //Runtime complexity: O(log n), n being the number of entries in the bucket
+    private static <K, V> MyEntry<K, V> findInTree(MyTreeBucket<MyEntry<K, V>> tree, MyEntry<K, V> head, int hashCode, K key) {
+        if (tree.incomplete) {
+            for (MyEntry<K, V> entry = head; entry != null; entry = entry.next)
+                if (entry.hashCode == hashCode && Objects.equals(key, entry.key))
+                    return entry;
+            return null;
+        }
+        return findInSubtree(tree.getTreeRoot(), hashCode, key);
+    }
+    
+    private static <K, V> MyEntry<K, V> findInSubtree(MyGenericTreeBST.MyTreeNode<MyEntry<K, V>> node, int hashCode, K key) {
+        while (node != null) {
+            MyEntry<K, V> entry = node.element;
+            if (hashCode != entry.hashCode) {
+                node = hashCode < entry.hashCode ? node.left : node.right;
+            } else if (Objects.equals(key, entry.key)) {
+                return entry;
+            } else {
+                int order = MyTreeBucket.compareKeys(key, entry.key);
+                if (order < 0)
+                    node = node.left;
+                else if (order > 0)
+                    node = node.right;
+                else {
+                    //same hash code and no order between the keys, the key could be on either side
+                    // (this is the only case where the lookup can take more than O(log n) steps)
+                    MyEntry<K, V> found = findInSubtree(node.right, hashCode, key);
+                    if (found != null)
+                        return found;
+                    node = node.left;
+                }
+            }
         }
+        return null;
+    }
+    
+    /**
+     * Unlinks an entry from a tree bucket and removes it from the tree,
+     * the bucket is turned back into a plain list if it got short enough
+     */
+    private void removeTreeEntry(MyEntry<K, V>[] keyTable, int bucketIndex, MyTreeBucket<MyEntry<K, V>> tree,
+                                 MyTreeBucketEntry<K, V> entry) {
+        MyTreeBucketEntry<K, V> next = (MyTreeBucketEntry<K, V>) entry.next;
+        if (entry.prev == null)
+            keyTable[bucketIndex] = next;
+        else
+            entry.prev.next = next;
+        if (next != null)
+            next.prev = entry.prev;
+        size--;
         
-        size = 0;//reset the size
+        MyTreeBucket<MyEntry<K, V>>[] keyTrees = keyTable == table ? trees : oldTrees;
+        if (tree.incomplete) {
+            //the entry might not be in the tree at all, and deleting it could remove a different entry
+            // that compares as equal, so the tree is built again from the list instead
+            int bucketSize = 0;
+            for (MyEntry<K, V> current = keyTable[bucketIndex]; current != null; current = current.next)
+                bucketSize++;
+            keyTrees[bucketIndex] = bucketSize > MyTreeBucket.UNTREEIFY_THRESHOLD ? buildTree(keyTable, bucketIndex) : null;
+        } else {
+            tree.delete(entry);
+            if (tree.getSize() <= MyTreeBucket.UNTREEIFY_THRESHOLD)
+                keyTrees[bucketIndex] = null;
+        }
+    }
+    
+    /**
+     * Returns: The number of buckets that need to be visited to see every entry,
+     * while a resize is in progress that includes the old buckets that were not moved yet
+     */
+    private int bucketCount() {
+        return oldTable == null ? table.length : table.length + oldTable.length - migrationIndex;
+    }
+    
+    /**
+     * Returns: The first entry in the bucket with the specified index (see bucketCount())
+     */
+    private MyEntry<K, V> bucketHead(int index) {
+        if (index < table.length)
+            return table[index];
+        return oldTable[migrationIndex + index - table.length];
+    }
+    
+    /**
+     * Puts a Bloom filter in front of get() and containsKey(), so most lookups of keys that are not in the map
+     * are answered by reading a single 64 byte block of the filter, without going to the table or calling equals()
+     * The filter is sized for the capacity of the table with the provided false positive rate (for example 0.01 for 1%,
+     * that takes about 10 bits per entry) and is resized together with the table
+     */
+    public void enableBloomFilter(double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        bloomFalsePositiveRate = falsePositiveRate;
+        rebuildBloomFilter();
+    }
+    
+    /**
+     * Removes the Bloom filter (see enableBloomFilter())
+     */
+    public void disableBloomFilter() {
+        bloomFilter = null;
+        oldBloomFilter = null;
+    }
+    
+    /**
+     * Returns: An empty filter sized for a full table of the provided capacity
+     */
+    private MyBloomFilter<K> newBloomFilter(int capacity) {
+        return new MyBloomFilter<>((long) Math.ceil(capacity * (double) loadFactorLimit), bloomFalsePositiveRate);
+    }
+    
+    private void addToBloomFilter(MyBloomFilter<K> filter, int hashCode) {
+        filter.addHash(hashCode);
+        //A key can't be taken out of a Bloom filter, removed keys just make false positives more likely.
+        // Once the filter got a lot more keys than it was sized for, it's built again from the keys that are left
+        if (filter.isOverfilled())
+            rebuildBloomFilter();
+    }
+    
+    /**
+     * Replaces the filter (or both filters while a resize is in progress) with new ones that hold exactly the current keys
+     */
+    //Runtime complexity: O(capacity)
+    private void rebuildBloomFilter() {
+        if (openTable != null) {
+            bloomFilter = newBloomFilter(openTable.capacity());
+            for (int slot = 0; slot < openTable.capacity(); slot++) {
+                K key = openTable.keyAt(slot);
+                if (key != null)
+                    bloomFilter.addHash(key.hashCode());
+            }
+            return;
+        }
         
-        for (MyEntry<K, V> entry : temp) {
-            //place all the entries back into the map
-            put(entry.getKey(), entry.getValue());
+        bloomFilter = newBloomFilter(table.length);
+        for (MyEntry<K, V> head : table)
+            for (MyEntry<K, V> entry = head; entry != null; entry = entry.next)
+                bloomFilter.addHash(entry.hashCode);
+        oldBloomFilter = null;
+        if (oldTable != null) {
+            oldBloomFilter = newBloomFilter(oldTable.length);
+            for (int i = migrationIndex; i < oldTable.length; i++)
+                for (MyEntry<K, V> entry = oldTable[i]; entry != null; entry = entry.next)
+                    oldBloomFilter.addHash(entry.hashCode);
         }
     }
     
+    /**
+     * Turns the collection of statistics on or off (they are off by default)
+     * Turning them on starts all counters (calls, resizes) from zero
+     */
+    public void setStatisticsEnabled(boolean enabled) {
+        counters = enabled ? new MyHashStatistics.Counters() : null;
+        if (openTable != null)
+            openTable.counters = counters;
+    }
+    
+    /**
+     * Returns: A snapshot of the current shape of the table and of the counters collected so far
+     * (the counters are all zero if statistics are not enabled, see setStatisticsEnabled())
+     */
+    //Runtime complexity: O(capacity), every bucket is visited to measure it
+    public MyHashStatistics statistics() {
+        if (openTable != null)
+            return new MyHashStatistics(openTable.capacity(), openTable.size(), openTable.probeLengthHistogram(),
+                    openTable.capacity() - openTable.size(), counters);
+        
+        //while a resize is in progress the buckets that were not moved yet are measured in the old table
+        long[] histogram = new long[MyTreeBucket.TREEIFY_THRESHOLD];
+        for (int i = 0; i < bucketCount(); i++) {
+            int length = 0;
+            for (MyEntry<K, V> entry = bucketHead(i); entry != null; entry = entry.next)
+                length++;
+            if (length >= histogram.length)
+                histogram = Arrays.copyOf(histogram, Math.max(length + 1, histogram.length << 1));
+            histogram[length]++;
+        }
+        return new MyHashStatistics(bucketCount(), size, histogram, histogram[0], counters);
+    }
+    
     /**
      * Returns: The count of entries currently in this map
      */
     public int size() {
-        return size;
+        return openTable != null ? openTable.size() : size;
     }
     
     public boolean isEmpty() {
-        return size == 0;
+        return size() == 0;
     }
     
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder("[");
         
-        for (LinkedList<MyEntry<K, V>> currentBucket : data) {
-            for (MyEntry<K, V> currentEntry : currentBucket) {
+        if (openTable != null) {
+            for (int i = 0; i < openTable.capacity(); i++)
+                if (openTable.keyAt(i) != null)
+                    sb.append("[").append(openTable.keyAt(i)).append(", ").append(openTable.valueAt(i)).append("]");
+            return sb.append("]").toString();
+        }
+        
+        for (int i = 0; i < bucketCount(); i++) {
+            for (MyEntry<K, V> currentEntry = bucketHead(i); currentEntry != null; currentEntry = currentEntry.next) {
                 sb.append(currentEntry);
             }
         }
@@ -254,13 +1253,340 @@ public class MyGenericHashMap<K, V> {
         return sb.toString();
     }
     
-    private class MyEntry<K, V> {
+    /**
+     * Goes through the mappings of the map one by one without creating any objects along the way,
+     * so a full scan costs O(capacity) and leaves no garbage behind. The same cursor can be reused after reset()
+     * Usage:
+     *     MyGenericHashMap<String, Integer>.MyCursor cursor = map.cursor();
+     *     while (cursor.advance())
+     *         if (cursor.value() == 0)
+     *             cursor.remove();
+     */
+    public final class MyCursor {
+        private int expectedModCount;
+        
+        //chaining mode, the buckets are visited in the same order as bucketHead() numbers them
+        // (new table first, then the old buckets that were not moved yet)
+        private MyEntry<K, V> current;
+        private int bucket;
+        // the entry after the current one, found only when it's needed
+        private MyEntry<K, V> next;
+        private int nextBucket;
+        private boolean nextKnown;
+        
+        //open addressing mode, the table does all the work
+        private final MyOpenAddressingTable<K, V>.Cursor openCursor;
+        
+        private MyCursor() {
+            openCursor = openTable != null ? openTable.new Cursor() : null;
+            reset();
+        }
+        
+        /**
+         * Moves the cursor back before the first mapping
+         */
+        public void reset() {
+            expectedModCount = modCount;
+            if (openCursor != null) {
+                openCursor.reset();
+                return;
+            }
+            current = null;
+            bucket = -1;
+            nextKnown = false;
+        }
+        
+        /**
+         * Moves the cursor to the next mapping
+         * Returns: false if there are no more mappings
+         */
+        public boolean advance() {
+            if (openCursor != null) {
+                checkForComodification();
+                return openCursor.advance();
+            }
+            if (!hasNext()) {
+                current = null;
+                return false;
+            }
+            current = next;
+            bucket = nextBucket;
+            nextKnown = false;
+            return true;
+        }
+        
+        private boolean hasNext() {
+            checkForComodification();
+            if (openCursor != null)
+                return openCursor.hasNext();
+            if (!nextKnown) {
+                next = current != null ? current.next : null;
+                nextBucket = bucket;
+                while (next == null && ++nextBucket < bucketCount())
+                    next = bucketHead(nextBucket);
+                nextKnown = true;
+            }
+            return next != null;
+        }
+        
+        /**
+         * Returns: The key of the current mapping
+         */
+        public K key() {
+            checkForComodification();
+            return openCursor != null ? openCursor.key() : currentEntry().key;
+        }
+        
+        /**
+         * Returns: The value of the current mapping
+         */
+        public V value() {
+            checkForComodification();
+            return openCursor != null ? openCursor.value() : currentEntry().value;
+        }
+        
+        /**
+         * Replaces the value of the current mapping
+         * Returns: the old value
+         */
+        public V setValue(V value) {
+            checkForComodification();
+            if (openCursor != null)
+                return openCursor.setValue(value);
+            return currentEntry().setValue(value);
+        }
+        
+        /**
+         * Removes the current mapping from the map, advance() moves on to the mapping after it
+         */
+        public void remove() {
+            checkForComodification();
+            if (openCursor != null) {
+                openCursor.remove();
+                modCount++;
+            } else {
+                MyEntry<K, V> entry = currentEntry();
+                //the next entry is found while the current one is still linked into its bucket
+                hasNext();
+                removeEntry(entry);
+                current = null;
+            }
+            expectedModCount = modCount;
+        }
+        
+        private MyEntry<K, V> currentEntry() {
+            if (current == null)
+                throw new IllegalStateException("The cursor is not on a mapping");
+            return current;
+        }
+        
+        /**
+         * Returns: The current mapping as an entry (a new object in open addressing mode)
+         */
+        private Map.Entry<K, V> entry() {
+            if (openCursor != null)
+                return new MyOpenEntry(openCursor.key(), openCursor.value());
+            return currentEntry();
+        }
+        
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+    
+    /**
+     * Iterator used by the views, it's just a cursor behind the Iterator interface
+     */
+    private abstract class MapIterator<T> implements Iterator<T> {
+        final MyCursor cursor = new MyCursor();
+        
+        @Override
+        public boolean hasNext() {
+            return cursor.hasNext();
+        }
+        
+        @Override
+        public T next() {
+            if (!cursor.advance())
+                throw new NoSuchElementException();
+            return current();
+        }
+        
+        @Override
+        public void remove() {
+            cursor.remove();
+        }
+        
+        abstract T current();
+    }
+    
+    private final class KeySetView extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new MapIterator<K>() {
+                @Override
+                K current() {
+                    return cursor.key();
+                }
+            };
+        }
+        
+        @Override
+        public int size() {
+            return MyGenericHashMap.this.size();
+        }
+        
+        @SuppressWarnings("unchecked") // if o is not a K, equals() simply won't match it
+        @Override
+        public boolean contains(Object o) {
+            return containsKey((K) o);
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean remove(Object o) {
+            if (!containsKey((K) o))
+                return false;
+            MyGenericHashMap.this.remove((K) o);
+            return true;
+        }
+        
+        @Override
+        public void clear() {
+            MyGenericHashMap.this.clear();
+        }
+    }
+    
+    private final class ValuesView extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new MapIterator<V>() {
+                @Override
+                V current() {
+                    return cursor.value();
+                }
+            };
+        }
+        
+        @Override
+        public int size() {
+            return MyGenericHashMap.this.size();
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean contains(Object o) {
+            return containsValue((V) o);
+        }
+        
+        @Override
+        public void clear() {
+            MyGenericHashMap.this.clear();
+        }
+    }
+    
+    private final class EntrySetView extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new MapIterator<Map.Entry<K, V>>() {
+                @Override
+                Map.Entry<K, V> current() {
+                    return cursor.entry();
+                }
+            };
+        }
+        
+        @Override
+        public int size() {
+            return MyGenericHashMap.this.size();
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            K key = (K) entry.getKey();
+            return containsKey(key) && Objects.equals(get(key), entry.getValue());
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o))
+                return false;
+            MyGenericHashMap.this.remove((K) ((Map.Entry<?, ?>) o).getKey());
+            return true;
+        }
+        
+        @Override
+        public void clear() {
+            MyGenericHashMap.this.clear();
+        }
+    }
+    
+    /**
+     * Entry handed out by entrySet() in open addressing mode, setValue() writes the new value into the map
+     */
+    private final class MyOpenEntry implements Map.Entry<K, V> {
+        private final K key;
+        private V value;
+        
+        MyOpenEntry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+        
+        public K getKey() {
+            return key;
+        }
+        
+        public V getValue() {
+            return value;
+        }
+        
+        public V setValue(V value) {
+            //through put(), in case the mapping was removed in the meantime and the key has to go into the Bloom filter again
+            put(key, value);
+            V oldValue = this.value;
+            this.value = value;
+            return oldValue;
+        }
+        
+        //same as any other Map.Entry, two entries are equal if both their keys and values are equal
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, other.getKey()) && Objects.equals(value, other.getValue());
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+        
+        @Override
+        public String toString() {
+            return "[" + key + ", " + value + "]";
+        }
+    }
+    
+    private static class MyEntry<K, V> implements Map.Entry<K, V>, Comparable<MyEntry<K, V>> {
         K key;
         V value;
+        // the key's hash code is saved so it never needs to be recalculated when the entry is moved to a bigger table
+        final int hashCode;
+        // next entry in the same bucket
+        MyEntry<K, V> next;
         
-        public MyEntry(K key, V value) {
+        public MyEntry(K key, V value, int hashCode) {
             this.key = key;
             this.value = value;
+            this.hashCode = hashCode;
         }
         
         public K getKey() {
@@ -271,10 +1597,48 @@ public class MyGenericHashMap<K, V> {
             return value;
         }
         
+        public V setValue(V value) {
+            V oldValue = this.value;
+            this.value = value;
+            return oldValue;
+        }
+        
+        //same as any other Map.Entry, two entries are equal if both their keys and values are equal
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, other.getKey()) && Objects.equals(value, other.getValue());
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+        
+        //order of entries in a tree bucket
+        @Override
+        public int compareTo(MyEntry<K, V> other) {
+            return MyTreeBucket.compare(hashCode, key, other.hashCode, other.key);
+        }
+        
         @Override
         public String toString() {
             return "[" + key + ", " + value + "]";
         }
     }
     
+    /**
+     * Entry in a tree bucket, it's also linked to the previous entry in the bucket
+     * so it can be unlinked without walking the list
+     */
+    private static class MyTreeBucketEntry<K, V> extends MyEntry<K, V> {
+        MyTreeBucketEntry<K, V> prev;
+        
+        MyTreeBucketEntry(K key, V value, int hashCode) {
+            super(key, value, hashCode);
+        }
+    }
+
 }
\ No newline at end of file
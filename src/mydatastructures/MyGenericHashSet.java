@@ -1,21 +1,58 @@
 package mydatastructures;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class MyGenericHashSet<E> implements Iterable<E> {
     
     private static final int START_CAP_DEFAULT = 4;
     private static final float LOAD_FACTOR_DEFAULT = 0.75f;
     private static final int MAX_CAP = 1 << 30;
+    // sets smaller than this are not worth splitting between threads in the bulk operations
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
     
-    private int capacity;
     private final float loadFactorLimit;
     private int size = 0;
+    // counts changes that add or remove elements, iterators use it to notice that the set was changed under them
+    private int modCount = 0;
     
-    private ArrayList<LinkedList<E>> data;
+    //each bucket is a linked list built from the nodes themselves,
+    // table[i] is the first node of bucket i (or null if the bucket is empty)
+    private Node<E>[] table;
+    
+    //the set is resized incrementally, the same way as MyGenericHashMap (look there for a detailed explanation)
+    // nodes of the oldTable below migrationIndex are already moved into table
+    private Node<E>[] oldTable;
+    private int migrationIndex;
+    private final int migrationStep;
+    
+    // trees of the buckets that got too long, same as in MyGenericHashMap (see MyTreeBucket)
+    private MyTreeBucket<Node<E>>[] trees;
+    private MyTreeBucket<Node<E>>[] oldTrees;
+    
+    // only allocated while statistics are enabled, same as in MyGenericHashMap
+    private MyHashStatistics.Counters counters;
+    
+    // optional filter in front of the lookups (null while disabled, see enableBloomFilter()),
+    // while a resize is in progress the elements of the buckets that were not moved yet are in oldBloomFilter
+    private MyBloomFilter<E> bloomFilter;
+    private MyBloomFilter<E> oldBloomFilter;
+    private double bloomFalsePositiveRate;
+    
+    // Alternative storage used when the set is created in grouped probing mode (null in chaining mode)
+    // see MySwissTable for details
+    private final MySwissTable<E> swissTable;
     
     /**
      * Default constructor
@@ -35,16 +72,38 @@ public class MyGenericHashSet<E> implements Iterable<E> {
      * Constructs a set with provided starting capacity and load factor
      */
     public MyGenericHashSet(int initialCapacity, float loadFactorLimit) {
-        this.capacity = Math.min(initialCapacity, MAX_CAP);
+        this(initialCapacity, loadFactorLimit, false);
+    }
+    
+    /**
+     * Constructs a set with provided starting capacity and load factor
+     * If groupedProbing is true, elements are kept in a flat array next to an array of 7 bit hash tags,
+     * which are compared 16 at a time so equals() is only called on likely matches (null elements are not supported in that mode)
+     */
+    public MyGenericHashSet(int initialCapacity, float loadFactorLimit, boolean groupedProbing) {
+        int capacity = Math.max(1, Math.min(initialCapacity, MAX_CAP));
         //set bounds for load factor between 0.1 and 1
         this.loadFactorLimit = Math.min(Math.max(0.1f, loadFactorLimit), 1f);
+        this.migrationStep = (int) Math.ceil(1 / this.loadFactorLimit) + 1;
         
-        data = new ArrayList<>();
-        //need to create these eagerly to avoid mixing arrays with generic types, ouch
-        for (int i = 0; i < capacity; i++) {
-            LinkedList<E> currentBucket = new LinkedList<>();
-            data.add(currentBucket);
+        if (groupedProbing) {
+            swissTable = new MySwissTable<>(capacity, this.loadFactorLimit);
+            return;
         }
+        swissTable = null;
+        
+        table = createTable(capacity);
+    }
+    
+    //safe, the table is private and only ever holds nodes of this set
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E> Node<E>[] createTable(int capacity) {
+        return (Node<E>[]) new Node[capacity];
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E> MyTreeBucket<Node<E>>[] createTrees(int capacity) {
+        return (MyTreeBucket<Node<E>>[]) new MyTreeBucket[capacity];
     }
     
     /**
@@ -52,22 +111,92 @@ public class MyGenericHashSet<E> implements Iterable<E> {
      * Returns: false if element was already in the set
      */
     public boolean add(E e) {
+        if (counters != null)
+            counters.puts++;
+        if (swissTable != null) {
+            int oldCapacity = swissTable.capacity();
+            if (!swissTable.add(e))
+                return false;
+            modCount++;
+            if (bloomFilter != null) {
+                //the table rebuilds itself all at once when it grows, and so does the filter
+                if (swissTable.capacity() != oldCapacity)
+                    rebuildBloomFilter();
+                else
+                    addToBloomFilter(bloomFilter, e.hashCode());
+            }
+            return true;
+        }
         
-        if (contains(e))
-            return false; // Element is already in the set
+        int hashCode = Objects.hashCode(e);
+        //figure out where should the new element go,
+        // based on the hash function
+        Node<E>[] elementTable = tableFor(hashCode);
+        int bucketIndex = hash(hashCode, elementTable.length);
         
-        if (size + 1 > capacity * loadFactorLimit) {
-            if (capacity == MAX_CAP)
-                throw new RuntimeException("Maximum capacity reached");
-            else
+        MyTreeBucket<Node<E>> tree = treeAt(elementTable, bucketIndex);
+        Node<E> last = null;
+        int bucketSize = 0;
+        if (tree != null) {
+            if (findInTree(tree, elementTable[bucketIndex], hashCode, e) != null)
+                return false;
+        } else {
+            for (Node<E> current = elementTable[bucketIndex]; current != null; current = current.next) {
+                if (current.hashCode == hashCode && Objects.equals(current.element, e))
+                    return false; // Element is already in the set
+                last = current;
+                bucketSize++;
+            }
+        }
+        
+        //the element is not in the set yet, so a new node will be added
+        modCount++;
+        //buckets are only moved when an element is actually added or removed (same as in MyGenericHashMap),
+        // so adding an element that is already in the set doesn't disturb an iteration
+        if (oldTable != null || size + 1 > table.length * loadFactorLimit) {
+            Node<E>[] previousTable = elementTable;
+            migrateStep();
+            if (size + 1 > table.length * loadFactorLimit) {
+                if (table.length == MAX_CAP)
+                    throw new RuntimeException("Maximum capacity reached");
                 rehash();
+            }
+            //the bucket has to be looked up again if it got moved in the meantime
+            if (tableFor(hashCode) != previousTable) {
+                elementTable = tableFor(hashCode);
+                bucketIndex = hash(hashCode, elementTable.length);
+                tree = treeAt(elementTable, bucketIndex);
+                last = null;
+                bucketSize = 0;
+                if (tree == null) {
+                    for (Node<E> current = elementTable[bucketIndex]; current != null; current = current.next) {
+                        last = current;
+                        bucketSize++;
+                    }
+                }
+            }
         }
         
-        //figure out where should the new element go,
-        // based on the hash function
-        int bucketIndex = hash(e);
-        data.get(bucketIndex).add(e);
+        if (tree != null) {
+            TreeBucketNode<E> newNode = new TreeBucketNode<>(e, hashCode);
+            newNode.next = elementTable[bucketIndex];
+            if (newNode.next != null)
+                ((TreeBucketNode<E>) newNode.next).prev = newNode;
+            elementTable[bucketIndex] = newNode;
+            tree.insertEntry(newNode);
+        } else {
+            Node<E> newNode = new Node<>(e, hashCode);
+            if (last == null)
+                elementTable[bucketIndex] = newNode;
+            else
+                last.next = newNode;
+            if (bucketSize + 1 >= MyTreeBucket.TREEIFY_THRESHOLD && elementTable == table
+                    && table.length >= MyTreeBucket.MIN_TREEIFY_CAPACITY)
+                treeify(bucketIndex);
+        }
         size++;
+        if (bloomFilter != null)
+            addToBloomFilter(elementTable == table ? bloomFilter : oldBloomFilter, hashCode);
         
         return true;
     }
@@ -77,24 +206,67 @@ public class MyGenericHashSet<E> implements Iterable<E> {
      * Returns: false if element was not in the set to begin with
      */
     public boolean remove(E e) {
-        if (!contains(e))
-            return false;
+        if (counters != null)
+            counters.removes++;
+        if (swissTable != null) {
+            if (!swissTable.remove(e))
+                return false;
+            modCount++;
+            return true;
+        }
         
-        int bucketIndex = hash(e);
-        data.get(bucketIndex).remove(e);
-        size--;
+        int hashCode = Objects.hashCode(e);
+        Node<E>[] elementTable = tableFor(hashCode);
+        int bucketIndex = hash(hashCode, elementTable.length);
         
-        return true;
+        MyTreeBucket<Node<E>> tree = treeAt(elementTable, bucketIndex);
+        if (tree != null) {
+            Node<E> node = findInTree(tree, elementTable[bucketIndex], hashCode, e);
+            if (node == null)
+                return false;
+            removeTreeNode(elementTable, bucketIndex, tree, (TreeBucketNode<E>) node);
+            modCount++;
+            migrateStep();
+            return true;
+        }
+        
+        Node<E> previous = null;
+        for (Node<E> current = elementTable[bucketIndex]; current != null; current = current.next) {
+            if (current.hashCode == hashCode && Objects.equals(current.element, e)) {
+                if (previous == null)
+                    elementTable[bucketIndex] = current.next;
+                else
+                    previous.next = current.next;
+                size--;
+                modCount++;
+                migrateStep();
+                return true;
+            }
+            previous = current;
+        }
+        
+        return false;
     }
     
     /**
      * Removes all data from this set
      */
     public void clear() {
-        size = 0;
-        for (LinkedList<E> currentBucket : data) {
-            currentBucket.clear();
+        modCount++;
+        if (bloomFilter != null) {
+            bloomFilter.clear();
+            oldBloomFilter = null;
+        }
+        if (swissTable != null) {
+            swissTable.clear();
+            return;
         }
+        
+        size = 0;
+        oldTable = null;
+        oldTrees = null;
+        trees = null;
+        Arrays.fill(table, null);
     }
     
     
@@ -102,74 +274,673 @@ public class MyGenericHashSet<E> implements Iterable<E> {
      * Returns: true if set contains the specified element
      */
     public boolean contains(E e) {
-        int bucketIndex = hash(e);
-        return data.get(bucketIndex).contains(e);
+        if (counters != null)
+            counters.gets++;
+        return containsElement(e);
+    }
+    
+    //the lookup itself, without counting it into the statistics,
+    // it doesn't change anything so the bulk operations can call it from several threads at once
+    @SuppressWarnings("unchecked") // safe, the element is only compared with equals()
+    private boolean containsElement(Object element) {
+        E e = (E) element;
+        if (swissTable != null) {
+            //a null element is left to the table, which doesn't support it
+            if (bloomFilter != null && e != null && !bloomFilter.mightContainHash(e.hashCode()))
+                return false;
+            return swissTable.contains(e);
+        }
+        
+        int hashCode = Objects.hashCode(e);
+        Node<E>[] elementTable = tableFor(hashCode);
+        //most elements that are not in the set are rejected here, by looking at a single block of the filter
+        if (bloomFilter != null && !(elementTable == table ? bloomFilter : oldBloomFilter).mightContainHash(hashCode))
+            return false;
+        int bucketIndex = hash(hashCode, elementTable.length);
+        MyTreeBucket<Node<E>> tree = treeAt(elementTable, bucketIndex);
+        if (tree != null)
+            return findInTree(tree, elementTable[bucketIndex], hashCode, e) != null;
+        for (Node<E> current = elementTable[bucketIndex]; current != null; current = current.next)
+            if (current.hashCode == hashCode && Objects.equals(current.element, e))
+                return true;
+        return false;
+    }
+    
+    /**
+     * Adds all elements of the other set to this set
+     * Returns: true if this set changed
+     */
+    //the elements that are missing are found first (in parallel for large sets), so the table is resized only once
+    public boolean addAll(MyGenericHashSet<? extends E> other) {
+        ArrayList<? extends E> missing = other.filter(this, false);
+        ensureCapacity(size() + missing.size());
+        for (E e : missing)
+            add(e);
+        return !missing.isEmpty();
+    }
+    
+    /**
+     * Removes all elements that are also in the other set from this set
+     * Returns: true if this set changed
+     */
+    @SuppressWarnings("unchecked") // safe, remove() only compares the element with equals()
+    public boolean removeAll(MyGenericHashSet<?> other) {
+        int oldSize = size();
+        if (other.size() < size()) {
+            //going through the smaller set is cheaper
+            for (Object e : other)
+                remove((E) e);
+        } else {
+            for (E e : filter(other, true))
+                remove(e);
+        }
+        return size() != oldSize;
+    }
+    
+    /**
+     * Removes all elements that are not in the other set from this set
+     * Returns: true if this set changed
+     */
+    //every element of this set has to be checked (the elements that stay are the ones of this set, not the equal ones of the other set)
+    public boolean retainAll(MyGenericHashSet<?> other) {
+        int oldSize = size();
+        for (E e : filter(other, false))
+            remove(e);
+        return size() != oldSize;
+    }
+    
+    /**
+     * Returns: true if every element of the other set is also in this set
+     */
+    public boolean containsAll(MyGenericHashSet<?> other) {
+        //a set can't contain a set with more (distinct) elements than it has itself
+        if (other.size() > size())
+            return false;
+        return other.allMatch(this, true);
+    }
+    
+    /**
+     * Returns: A new set with the elements that are in this set, the other set or both
+     */
+    public MyGenericHashSet<E> union(MyGenericHashSet<? extends E> other) {
+        MyGenericHashSet<? extends E> larger = other.size() > size() ? other : this;
+        MyGenericHashSet<? extends E> smaller = larger == this ? other : this;
+        //only the elements of the smaller set that are missing from the larger set need to be looked up
+        ArrayList<? extends E> missing = smaller.filter(larger, false);
+        MyGenericHashSet<E> result = newResultSet(larger.size() + missing.size());
+        for (E e : larger)
+            result.add(e);
+        for (E e : missing)
+            result.add(e);
+        return result;
+    }
+    
+    /**
+     * Returns: A new set with the elements that are in both this and the other set
+     */
+    public MyGenericHashSet<E> intersect(MyGenericHashSet<? extends E> other) {
+        //every element of the smaller set is looked up in the larger one
+        ArrayList<? extends E> common = other.size() < size() ? other.filter(this, true) : filter(other, true);
+        MyGenericHashSet<E> result = newResultSet(common.size());
+        for (E e : common)
+            result.add(e);
+        return result;
     }
     
+    /**
+     * Returns: A new set with the elements of this set that are not in the other set
+     */
+    //every element of this set has to be checked here, no matter how small the other set is
+    public MyGenericHashSet<E> difference(MyGenericHashSet<?> other) {
+        ArrayList<E> remaining = filter(other, false);
+        MyGenericHashSet<E> result = newResultSet(remaining.size());
+        for (E e : remaining)
+            result.add(e);
+        return result;
+    }
+    
+    /**
+     * Returns: An empty set with the same storage mode as this one, big enough for the expected number of elements
+     */
+    private MyGenericHashSet<E> newResultSet(int expectedSize) {
+        MyGenericHashSet<E> result = new MyGenericHashSet<>(START_CAP_DEFAULT, loadFactorLimit, swissTable != null);
+        result.ensureCapacity(expectedSize);
+        return result;
+    }
+    
+    /**
+     * Returns: The elements of this set that are (keep = true) or are not (keep = false) in the other set
+     */
+    //Large sets are split into ranges of buckets (or slots), which are checked by fork-join tasks in parallel.
+    // Only lookups are done while the tasks run, neither set is changed
+    private ArrayList<E> filter(MyGenericHashSet<?> other, boolean keep) {
+        int slots = slotCount();
+        int parallelism = parallelism();
+        if (size() < PARALLEL_THRESHOLD || parallelism < 2) {
+            ArrayList<E> found = new ArrayList<>(keep ? Math.min(size(), other.size()) : size());
+            collect(0, slots, other, keep, found);
+            return found;
+        }
+        
+        int partitions = Math.min(slots, parallelism * 4);
+        @SuppressWarnings({"unchecked", "rawtypes"}) //safe, the array is local and only holds lists of E
+        ArrayList<E>[] parts = (ArrayList<E>[]) new ArrayList[partitions];
+        IntStream.range(0, partitions).parallel().forEach(p -> {
+            parts[p] = new ArrayList<>();
+            collect(rangeStart(p, partitions, slots), rangeStart(p + 1, partitions, slots), other, keep, parts[p]);
+        });
+        
+        int total = 0;
+        for (ArrayList<E> part : parts)
+            total += part.size();
+        ArrayList<E> found = new ArrayList<>(total);
+        for (ArrayList<E> part : parts)
+            found.addAll(part);
+        return found;
+    }
+    
+    /**
+     * Returns: true if the presence in the other set is equal to 'expected' for every element of this set
+     */
+    private boolean allMatch(MyGenericHashSet<?> other, boolean expected) {
+        int slots = slotCount();
+        int parallelism = parallelism();
+        if (size() < PARALLEL_THRESHOLD || parallelism < 2)
+            return allMatch(0, slots, other, expected);
+        int partitions = Math.min(slots, parallelism * 4);
+        return IntStream.range(0, partitions).parallel()
+                .allMatch(p -> allMatch(rangeStart(p, partitions, slots), rangeStart(p + 1, partitions, slots), other, expected));
+    }
+    
+    private boolean allMatch(int from, int to, MyGenericHashSet<?> other, boolean expected) {
+        for (int i = from; i < to; i++) {
+            if (swissTable != null) {
+                E e = swissTable.elementAt(i);
+                if (e != null && other.containsElement(e) != expected)
+                    return false;
+            } else {
+                for (Node<E> node = bucketHead(i); node != null; node = node.next)
+                    if (other.containsElement(node.element) != expected)
+                        return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Adds the elements of buckets (or slots) from..to-1 that are (keep = true) or are not (keep = false) in the other set to the list
+     */
+    private void collect(int from, int to, MyGenericHashSet<?> other, boolean keep, ArrayList<E> found) {
+        for (int i = from; i < to; i++) {
+            if (swissTable != null) {
+                E e = swissTable.elementAt(i);
+                if (e != null && other.containsElement(e) == keep)
+                    found.add(e);
+            } else {
+                for (Node<E> node = bucketHead(i); node != null; node = node.next)
+                    if (other.containsElement(node.element) == keep)
+                        found.add(node.element);
+            }
+        }
+    }
+    
+    private static int rangeStart(int partition, int partitions, int slots) {
+        return (int) ((long) partition * slots / partitions);
+    }
+    
+    /**
+     * Returns: The number of buckets (or slots in grouped probing mode) to go through to see every element
+     */
+    private int slotCount() {
+        return swissTable != null ? swissTable.capacity() : bucketCount();
+    }
+    
+    //the parallel streams run in the pool of the calling task if there is one (so the number of threads used can be limited),
+    // otherwise in the common pool
+    private static int parallelism() {
+        return ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool().getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+    }
+    
+    /**
+     * Makes sure the set can hold the specified number of elements without resizing again
+     */
+    //Runtime complexity: O(n), every element is moved to the new table right away
+    public void ensureCapacity(int expectedSize) {
+        if (swissTable != null) {
+            int oldCapacity = swissTable.capacity();
+            swissTable.ensureCapacity(expectedSize);
+            if (swissTable.capacity() != oldCapacity) {
+                modCount++;
+                if (bloomFilter != null)
+                    rebuildBloomFilter();
+            }
+            return;
+        }
+        
+        long needed = Math.min((long) Math.ceil(expectedSize / (double) loadFactorLimit), MAX_CAP);
+        if (table.length >= needed)
+            return;
+        modCount++;
+        
+        //the table is allocated once at its final size and every node goes straight to its bucket there,
+        // a resize that is still in progress is finished along the way (its moved buckets are already empty)
+        long start = counters != null ? System.nanoTime() : 0;
+        Node<E>[] newTable = createTable((int) needed);
+        moveAll(table, newTable);
+        if (oldTable != null)
+            moveAll(oldTable, newTable);
+        table = newTable;
+        trees = null;
+        oldTable = null;
+        oldTrees = null;
+        oldBloomFilter = null;
+        migrationIndex = 0;
+        
+        //the old trees don't fit the new buckets, the buckets that are still long enough get new ones
+        if (table.length >= MyTreeBucket.MIN_TREEIFY_CAPACITY) {
+            for (int i = 0; i < table.length; i++) {
+                int bucketSize = 0;
+                for (Node<E> node = table[i]; node != null; node = node.next)
+                    bucketSize++;
+                if (bucketSize >= MyTreeBucket.TREEIFY_THRESHOLD)
+                    treeify(i);
+            }
+        }
+        if (bloomFilter != null)
+            rebuildBloomFilter();
+        if (counters != null) {
+            counters.rehashes++;
+            counters.rehashNanos += System.nanoTime() - start;
+        }
+    }
+    
+    /**
+     * Moves all nodes of the provided table into the new table, leaving the provided table empty
+     */
+    //the new capacity can be anything (not just double), so each node is hashed again and put in front of its new bucket
+    private static <E> void moveAll(Node<E>[] from, Node<E>[] to) {
+        for (int i = 0; i < from.length; i++) {
+            Node<E> node = from[i];
+            while (node != null) {
+                Node<E> next = node.next;
+                int bucketIndex = hash(node.hashCode, to.length);
+                node.next = to[bucketIndex];
+                to[bucketIndex] = node;
+                node = next;
+            }
+            from[i] = null;
+        }
+    }
     
     /**
      * Hash function
      */
-    private int hash(E element) {
+    private static int hash(int hashCode, int capacity) {
         //Focus of this class is to demonstrate how a Map can be implemented, not to demonstrate various hashing functions
         // therefore the most basic one will be sufficient for this example
-        return Math.abs(Objects.hashCode(element) % capacity);
+        return Math.abs(hashCode % capacity);
+    }
+    
+    /**
+     * Returns: The table that currently holds the bucket for the specified hash code
+     */
+    private Node<E>[] tableFor(int hashCode) {
+        if (oldTable != null && hash(hashCode, oldTable.length) >= migrationIndex)
+            return oldTable;
+        return table;
     }
     
     /**
      * Rehash the set
      */
+    //allocates the doubled table, elements are moved gradually by migrateStep()
     private void rehash() {
-        ArrayList<E> temp = getListOfElements(); // Temporarily save entries
-        capacity = capacity << 1; // Double capacity
-        //Clear out all the buckets because all keys will be rehashed
-        //so the same entry might go in a different bucket now
-        for (LinkedList<E> currentBucket : data) {
-            currentBucket.clear();
+        while (oldTable != null)
+            migrateStep();
+        
+        long start = counters != null ? System.nanoTime() : 0;
+        oldTable = table;
+        oldTrees = trees;
+        table = createTable(table.length << 1);
+        trees = null;
+        migrationIndex = 0;
+        //the new table gets its own (bigger) filter, it's filled as the buckets are moved over
+        if (bloomFilter != null) {
+            oldBloomFilter = bloomFilter;
+            bloomFilter = newBloomFilter(table.length);
         }
-        //add more buckets to match capacity.
-        while (data.size() < capacity) {
-            LinkedList<E> newBucket = new LinkedList<>();
-            data.add(newBucket);
+        if (counters != null) {
+            counters.rehashes++;
+            counters.rehashNanos += System.nanoTime() - start;
         }
+    }
+    
+    /**
+     * Moves the next few buckets from the old table into the new table, if a resize is in progress
+     */
+    private void migrateStep() {
+        if (oldTable == null)
+            return;
         
-        size = 0;//reset the size
+        long start = counters != null ? System.nanoTime() : 0;
+        int end = Math.min(migrationIndex + migrationStep, oldTable.length);
+        for (; migrationIndex < end; migrationIndex++)
+            moveBucket(migrationIndex);
         
-        for (E element : temp) {
-            add(element); // Add from the old table to the new table
+        if (migrationIndex == oldTable.length) {
+            oldTable = null;
+            oldTrees = null;
+            oldBloomFilter = null;
         }
+        if (counters != null)
+            counters.rehashNanos += System.nanoTime() - start;
     }
     
     /**
-     * Copy elements in the hash set to an array list
+     * Moves all nodes of one old bucket into the new table (to bucket i or i + oldCapacity)
      */
-    private ArrayList<E> getListOfElements() {
-        ArrayList<E> list = new ArrayList<>();
-        for (LinkedList<E> currentBucket : data) {
-            list.addAll(currentBucket);
+    private void moveBucket(int oldIndex) {
+        Node<E> lowHead = null, lowTail = null, highHead = null, highTail = null;
+        int lowSize = 0, highSize = 0;
+        Node<E> node = oldTable[oldIndex];
+        while (node != null) {
+            Node<E> next = node.next;
+            node.next = null;
+            if (bloomFilter != null)
+                bloomFilter.addHash(node.hashCode);
+            if (hash(node.hashCode, table.length) == oldIndex) {
+                if (lowTail == null)
+                    lowHead = node;
+                else
+                    lowTail.next = node;
+                lowTail = node;
+                lowSize++;
+            } else {
+                if (highTail == null)
+                    highHead = node;
+                else
+                    highTail.next = node;
+                highTail = node;
+                highSize++;
+            }
+            node = next;
+        }
+        oldTable[oldIndex] = null;
+        table[oldIndex] = lowHead;
+        table[oldIndex + oldTable.length] = highHead;
+        
+        if (oldTrees != null && oldTrees[oldIndex] != null) {
+            oldTrees[oldIndex] = null;
+            if (lowSize > MyTreeBucket.UNTREEIFY_THRESHOLD)
+                treeify(oldIndex);
+            if (highSize > MyTreeBucket.UNTREEIFY_THRESHOLD)
+                treeify(oldIndex + oldTable.length);
+        }
+    }
+    
+    /**
+     * Returns: The tree of the specified bucket, or null if that bucket is a plain list
+     */
+    private MyTreeBucket<Node<E>> treeAt(Node<E>[] elementTable, int bucketIndex) {
+        MyTreeBucket<Node<E>>[] elementTrees = elementTable == table ? trees : oldTrees;
+        return elementTrees == null ? null : elementTrees[bucketIndex];
+    }
+    
+    /**
+     * Turns the bucket with the specified index in the current table into a tree bucket
+     */
+    private void treeify(int bucketIndex) {
+        if (trees == null)
+            trees = createTrees(table.length);
+        trees[bucketIndex] = buildTree(table, bucketIndex);
+    }
+    
+    /**
+     * Returns: A tree of all nodes in the specified bucket (plain nodes are replaced with TreeBucketNode objects)
+     */
+    private static <E> MyTreeBucket<Node<E>> buildTree(Node<E>[] elementTable, int bucketIndex) {
+        MyTreeBucket<Node<E>> tree = new MyTreeBucket<>();
+        TreeBucketNode<E> previous = null;
+        for (Node<E> node = elementTable[bucketIndex]; node != null; node = node.next) {
+            TreeBucketNode<E> treeNode;
+            if (node instanceof TreeBucketNode) {
+                treeNode = (TreeBucketNode<E>) node;
+            } else {
+                treeNode = new TreeBucketNode<>(node.element, node.hashCode);
+                treeNode.next = node.next;
+            }
+            treeNode.prev = previous;
+            if (previous == null)
+                elementTable[bucketIndex] = treeNode;
+            else
+                previous.next = treeNode;
+            tree.insertEntry(treeNode);
+            previous = treeNode;
+        }
+        return tree;
+    }
+    
+    /**
+     * Returns: The node with the provided element in a tree bucket, or null if the element is not in that bucket
+     */
+    //Runtime complexity: O(log n), n being the number of nodes in the bucket
+    private static <E> Node<E> findInTree(MyTreeBucket<Node<E>> tree, Node<E> head, int hashCode, E e) {
+        if (tree.incomplete) {
+            for (Node<E> node = head; node != null; node = node.next)
+                if (node.hashCode == hashCode && Objects.equals(node.element, e))
+                    return node;
+            return null;
+        }
+        return findInSubtree(tree.getTreeRoot(), hashCode, e);
+    }
+    
+    private static <E> Node<E> findInSubtree(MyGenericTreeBST.MyTreeNode<Node<E>> treeNode, int hashCode, E e) {
+        while (treeNode != null) {
+            Node<E> node = treeNode.element;
+            if (hashCode != node.hashCode) {
+                treeNode = hashCode < node.hashCode ? treeNode.left : treeNode.right;
+            } else if (Objects.equals(e, node.element)) {
+                return node;
+            } else {
+                int order = MyTreeBucket.compareKeys(e, node.element);
+                if (order < 0)
+                    treeNode = treeNode.left;
+                else if (order > 0)
+                    treeNode = treeNode.right;
+                else {
+                    //no order between the elements, it could be on either side
+                    Node<E> found = findInSubtree(treeNode.right, hashCode, e);
+                    if (found != null)
+                        return found;
+                    treeNode = treeNode.left;
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Unlinks a node from a tree bucket and removes it from the tree,
+     * the bucket is turned back into a plain list if it got short enough
+     */
+    private void removeTreeNode(Node<E>[] elementTable, int bucketIndex, MyTreeBucket<Node<E>> tree, TreeBucketNode<E> node) {
+        TreeBucketNode<E> next = (TreeBucketNode<E>) node.next;
+        if (node.prev == null)
+            elementTable[bucketIndex] = next;
+        else
+            node.prev.next = next;
+        if (next != null)
+            next.prev = node.prev;
+        size--;
+        
+        MyTreeBucket<Node<E>>[] elementTrees = elementTable == table ? trees : oldTrees;
+        if (tree.incomplete) {
+            //see MyGenericHashMap.removeTreeEntry()
+            int bucketSize = 0;
+            for (Node<E> current = elementTable[bucketIndex]; current != null; current = current.next)
+                bucketSize++;
+            elementTrees[bucketIndex] = bucketSize > MyTreeBucket.UNTREEIFY_THRESHOLD ? buildTree(elementTable, bucketIndex) : null;
+        } else {
+            tree.delete(node);
+            if (tree.getSize() <= MyTreeBucket.UNTREEIFY_THRESHOLD)
+                elementTrees[bucketIndex] = null;
+        }
+    }
+    
+    /**
+     * Unlinks the provided node from its bucket
+     */
+    //doesn't move any buckets, so it can be used by an iterator in the middle of a scan
+    private void removeNode(Node<E> node) {
+        Node<E>[] elementTable = tableFor(node.hashCode);
+        int bucketIndex = hash(node.hashCode, elementTable.length);
+        MyTreeBucket<Node<E>> tree = treeAt(elementTable, bucketIndex);
+        if (tree != null) {
+            removeTreeNode(elementTable, bucketIndex, tree, (TreeBucketNode<E>) node);
+            return;
+        }
+        
+        if (elementTable[bucketIndex] == node) {
+            elementTable[bucketIndex] = node.next;
+        } else {
+            Node<E> previous = elementTable[bucketIndex];
+            while (previous.next != node)
+                previous = previous.next;
+            previous.next = node.next;
+        }
+        size--;
+    }
+    
+    /**
+     * Returns: The number of buckets that need to be visited to see every element,
+     * while a resize is in progress that includes the old buckets that were not moved yet
+     */
+    private int bucketCount() {
+        return oldTable == null ? table.length : table.length + oldTable.length - migrationIndex;
+    }
+    
+    /**
+     * Returns: The first node in the bucket with the specified index (see bucketCount())
+     */
+    private Node<E> bucketHead(int index) {
+        if (index < table.length)
+            return table[index];
+        return oldTable[migrationIndex + index - table.length];
+    }
+    
+    /**
+     * Turns the collection of statistics on or off (they are off by default)
+     * Turning them on starts all counters (calls, resizes) from zero
+     */
+    public void setStatisticsEnabled(boolean enabled) {
+        counters = enabled ? new MyHashStatistics.Counters() : null;
+        if (swissTable != null)
+            swissTable.counters = counters;
+    }
+    
+    /**
+     * Returns: A snapshot of the current shape of the table and of the counters collected so far
+     * (the counters are all zero if statistics are not enabled)
+     */
+    //Runtime complexity: O(capacity)
+    public MyHashStatistics statistics() {
+        if (swissTable != null)
+            return new MyHashStatistics(swissTable.capacity(), swissTable.size(), swissTable.probeLengthHistogram(),
+                    swissTable.capacity() - swissTable.size(), counters);
+        
+        long[] histogram = new long[MyTreeBucket.TREEIFY_THRESHOLD];
+        for (int i = 0; i < bucketCount(); i++) {
+            int length = 0;
+            for (Node<E> current = bucketHead(i); current != null; current = current.next)
+                length++;
+            if (length >= histogram.length)
+                histogram = Arrays.copyOf(histogram, Math.max(length + 1, histogram.length << 1));
+            histogram[length]++;
+        }
+        return new MyHashStatistics(bucketCount(), size, histogram, histogram[0], counters);
+    }
+    
+    /**
+     * Puts a Bloom filter in front of contains() (and the bulk operations), so most lookups of elements that are not in the set
+     * are answered by reading a single 64 byte block of the filter, without going to the table or calling equals()
+     * The filter is sized for the capacity of the table with the provided false positive rate (for example 0.01 for 1%,
+     * that takes about 10 bits per element) and is rebuilt together with the table
+     */
+    public void enableBloomFilter(double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        bloomFalsePositiveRate = falsePositiveRate;
+        rebuildBloomFilter();
+    }
+    
+    /**
+     * Removes the Bloom filter (see enableBloomFilter())
+     */
+    public void disableBloomFilter() {
+        bloomFilter = null;
+        oldBloomFilter = null;
+    }
+    
+    /**
+     * Returns: An empty filter sized for a full table of the provided capacity
+     */
+    private MyBloomFilter<E> newBloomFilter(int capacity) {
+        return new MyBloomFilter<>((long) Math.ceil(capacity * (double) loadFactorLimit), bloomFalsePositiveRate);
+    }
+    
+    private void addToBloomFilter(MyBloomFilter<E> filter, int hashCode) {
+        filter.addHash(hashCode);
+        //the bits of removed elements can't be cleared, so after a lot of removals the filter is built again from the current elements
+        if (filter.isOverfilled())
+            rebuildBloomFilter();
+    }
+    
+    /**
+     * Replaces the filter (or both filters while a resize is in progress) with new ones that hold exactly the current elements
+     */
+    //Runtime complexity: O(capacity)
+    private void rebuildBloomFilter() {
+        if (swissTable != null) {
+            bloomFilter = newBloomFilter(swissTable.capacity());
+            for (int slot = 0; slot < swissTable.capacity(); slot++) {
+                E e = swissTable.elementAt(slot);
+                if (e != null)
+                    bloomFilter.addHash(e.hashCode());
+            }
+            return;
+        }
+        
+        bloomFilter = newBloomFilter(table.length);
+        for (Node<E> head : table)
+            for (Node<E> node = head; node != null; node = node.next)
+                bloomFilter.addHash(node.hashCode);
+        oldBloomFilter = null;
+        if (oldTable != null) {
+            oldBloomFilter = newBloomFilter(oldTable.length);
+            for (int i = migrationIndex; i < oldTable.length; i++)
+                for (Node<E> node = oldTable[i]; node != null; node = node.next)
+                    oldBloomFilter.addHash(node.hashCode);
         }
-        return list;
     }
     
     public int size() {
-        return size;
+        return swissTable != null ? swissTable.size() : size;
     }
     
     public boolean isEmpty() {
-        return size == 0;
+        return size() == 0;
     }
     
     @Override
     public String toString() {
-        ArrayList<E> list = getListOfElements();
         StringBuilder sb = new StringBuilder("[");
         
-        
-        for (E e : list) {
+        //the elements are read straight from the buckets, nothing is copied
+        for (E e : this) {
             sb.append(e).append(", ");
         }
         
-        if (list.size() != 0) {
+        if (size() != 0) {
             sb.deleteCharAt(sb.length() - 1).deleteCharAt(sb.length() - 1);
         }
         
@@ -180,32 +951,220 @@ public class MyGenericHashSet<E> implements Iterable<E> {
     @Override
     /** Returns: An iterator for traversing through all elements in the set */
     public Iterator<E> iterator() {
-        return new MyGenericHashSetIterator(this);
+        return new MyGenericHashSetIterator();
     }
     
+    //Walks the buckets in place, finding the next element only when it's asked for,
+    // so starting an iteration (or stopping it early) costs nothing.
+    //Fail-fast: if the set is changed other than through remove() of this iterator, next() throws ConcurrentModificationException
     private class MyGenericHashSetIterator implements Iterator<E> {
-        // Store the elements in a list
-        private final ArrayList<E> elements;
-        private int currentElement = 0;
-        private MyGenericHashSet<E> set;
+        // next bucket to look into (see bucketCount()), or the next slot in grouped probing mode
+        private int index = 0;
+        private Node<E> nextNode;
+        private Node<E> lastReturned;
+        // slot of the element last returned in grouped probing mode (-1 if there is none)
+        private int lastSlot = -1;
+        private int expectedModCount = modCount;
+        
+        @Override
+        public boolean hasNext() {
+            if (swissTable != null) {
+                while (index < swissTable.capacity() && swissTable.elementAt(index) == null)
+                    index++;
+                return index < swissTable.capacity();
+            }
+            //buckets don't move while the set is not changed, so the bucket index stays valid between calls
+            while (nextNode == null && index < bucketCount())
+                nextNode = bucketHead(index++);
+            return nextNode != null;
+        }
+        
+        @Override
+        public E next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            
+            if (swissTable != null) {
+                lastSlot = index++;
+                return swissTable.elementAt(lastSlot);
+            }
+            lastReturned = nextNode;
+            nextNode = nextNode.next;
+            return lastReturned.element;
+        }
         
         /**
-         * Creates a list of elements from the current set.
+         * Removes the element last returned by next() from the set
          */
-        public MyGenericHashSetIterator(MyGenericHashSet<E> set) {
-            this.set = set;
-            elements = getListOfElements();
+        @Override
+        public void remove() {
+            if (lastReturned == null && lastSlot < 0)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            
+            //neither removal moves any other element, so the iteration can go on from where it is
+            if (swissTable != null) {
+                swissTable.removeAt(lastSlot);
+                lastSlot = -1;
+            } else {
+                removeNode(lastReturned);
+                lastReturned = null;
+            }
+            modCount++;
+            expectedModCount = modCount;
+        }
+    }
+    
+    /**
+     * Returns: A spliterator over the elements, a parallel stream splits it into ranges of buckets (or slots in grouped probing mode)
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new MyGenericHashSetSpliterator(0, slotCount(), size(), true, modCount);
+    }
+    
+    /**
+     * Returns: A sequential stream of the elements
+     */
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    
+    /**
+     * Returns: A parallel stream of the elements, every thread goes through its own range of buckets
+     */
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+    
+    //Splitting hands off the first half of the remaining buckets, the same way the bulk operations split the set.
+    //How many elements are in each half is not known without counting them, so only a spliterator that was never split
+    // reports an exact size (a split one halves its estimate).
+    //Fail-fast like the iterator: if the set is changed while the stream runs, it throws ConcurrentModificationException
+    private class MyGenericHashSetSpliterator implements Spliterator<E> {
+        // next bucket (see bucketCount()) or slot to look into, and one past the last one
+        private int index;
+        private final int fence;
+        // the rest of the bucket that is being visited (null between buckets)
+        private Node<E> current;
+        private long estimate;
+        private boolean exact;
+        private final int expectedModCount;
+        
+        MyGenericHashSetSpliterator(int index, int fence, long estimate, boolean exact, int expectedModCount) {
+            this.index = index;
+            this.fence = fence;
+            this.estimate = estimate;
+            this.exact = exact;
+            this.expectedModCount = expectedModCount;
         }
         
         @Override
-        public boolean hasNext() {
-            return currentElement < elements.size();
+        public Spliterator<E> trySplit() {
+            int middle = (index + fence) >>> 1;
+            //a bucket that is half visited can't be split
+            if (index >= middle || current != null)
+                return null;
+            estimate >>>= 1;
+            exact = false;
+            int start = index;
+            index = middle;
+            return new MyGenericHashSetSpliterator(start, middle, estimate, false, expectedModCount);
         }
         
         @Override
-        public E next() {
-            return elements.get(currentElement++);
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (swissTable != null) {
+                while (index < fence) {
+                    E e = swissTable.elementAt(index++);
+                    if (e != null) {
+                        if (estimate > 0)
+                            estimate--;
+                        action.accept(e);
+                        return true;
+                    }
+                }
+                return false;
+            }
+            while (current == null && index < fence)
+                current = bucketHead(index++);
+            if (current == null)
+                return false;
+            E e = current.element;
+            current = current.next;
+            if (estimate > 0)
+                estimate--;
+            action.accept(e);
+            return true;
+        }
+        
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            if (swissTable != null) {
+                for (; index < fence; index++) {
+                    E e = swissTable.elementAt(index);
+                    if (e != null)
+                        action.accept(e);
+                }
+            } else {
+                for (Node<E> node = current; node != null; node = node.next)
+                    action.accept(node.element);
+                current = null;
+                for (; index < fence; index++)
+                    for (Node<E> node = bucketHead(index); node != null; node = node.next)
+                        action.accept(node.element);
+            }
+            estimate = 0;
+            //checked once at the end, the elements have been handed out already but the stream still fails
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+        
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+        
+        @Override
+        public int characteristics() {
+            return Spliterator.DISTINCT | (exact ? Spliterator.SIZED : 0) | (swissTable != null ? Spliterator.NONNULL : 0);
+        }
+    }
+    
+    /**
+     * A single element of the set, linked to the next element in the same bucket
+     */
+    private static class Node<E> implements Comparable<Node<E>> {
+        final E element;
+        // saved so it doesn't have to be recalculated when the node is moved to a bigger table
+        final int hashCode;
+        Node<E> next;
+        
+        Node(E element, int hashCode) {
+            this.element = element;
+            this.hashCode = hashCode;
+        }
+        
+        //order of nodes in a tree bucket
+        @Override
+        public int compareTo(Node<E> other) {
+            return MyTreeBucket.compare(hashCode, element, other.hashCode, other.element);
+        }
+    }
+    
+    /**
+     * Node in a tree bucket, also linked to the previous node so it can be unlinked without walking the list
+     */
+    private static class TreeBucketNode<E> extends Node<E> {
+        TreeBucketNode<E> prev;
+        
+        TreeBucketNode(E element, int hashCode) {
+            super(element, hashCode);
         }
     }
 }
-
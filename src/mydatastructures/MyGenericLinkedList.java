@@ -1,20 +1,36 @@
 package mydatastructures;
 
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class MyGenericLinkedList<E> implements Iterable<E>{
     
     private Node<E> head;
     private Node<E> tail;
     private int size = 0; // Count of elements currently in the list
+    // in doubly linked mode every node also knows the node before it (see DoublyLinkedNode)
+    private final boolean doublyLinked;
     
     /** Default empty constructor */
     public MyGenericLinkedList() {
+        this(false);
+    }
+    
+    /** Constructor for an empty list, that is doubly linked if the flag is set.
+     * A doubly linked list takes a little more memory (one more reference per node), but removeLast() is O(1),
+     * get()/set()/add(index)/remove(index) walk from whichever end is closer, and lastIndexOf() searches from the end */
+    public MyGenericLinkedList(boolean doublyLinked) {
+        this.doublyLinked = doublyLinked;
     }
     
     /** Creates a list from an array of elements of type E
      * such that first element in the array is the head, and last is tail*/
     public MyGenericLinkedList(E[] elements) {
+        this(false);
         for (int i = 0; i < elements.length; i++)
             addLast(elements[i]);
     }
@@ -23,8 +39,10 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
      * this node becomes the new Head */
     //Runtime complexity: O(1)
     public void addFirst(E e) {
-        Node<E> newNode = new Node<>(e); // Create a node to wrap the new element
+        Node<E> newNode = newNode(e); // Create a node to wrap the new element
         newNode.next = head; // link the new node with the head
+        if (head != null)
+            setPrevious(head, newNode); // and the head back with the new node (only in doubly linked mode)
         head = newNode; // head points to the new node
         size++;
         
@@ -38,7 +56,7 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
      * added node becomes the new Tail*/
     //Runtime complexity: O(1)
     public void addLast(E e) {
-        Node<E> newNode = new Node<>(e); // Create a node to wrap the new element
+        Node<E> newNode = newNode(e); // Create a node to wrap the new element
         
         // if the list was empty before new node was added
         // new node becomes tail AND head, since it's the only one in the list.
@@ -46,6 +64,7 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
             head = tail = newNode;
         else{
             tail.next = newNode; // Connect the newNode to the tail
+            setPrevious(newNode, tail);
             tail = newNode; // switch tail to point to new last node
         }
         size++;
@@ -61,7 +80,7 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
     
     /** Adds a new element at the passed in index.
      * if index > size, element will instead be added to the end of the list*/
-    // Runtime complexity: O(n)
+    // Runtime complexity: O(n), in doubly linked mode at most n/2 nodes are visited
     public void add(int index, E e) {
         if(index < 0)
             throw new IndexOutOfBoundsException("Indexing starts at 0. Can't add element to index " + index);
@@ -70,14 +89,10 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
         else if (index >= size)
             addLast(e);
         else {
-            //start at the head
-            Node<E> current = head;
-            //and travel down the list to the node just before specified index
-            for (int i = 1; i < index; i++) {
-                current = current.next;
-            }
+            //travel to the node just before specified index
+            Node<E> current = node(index - 1);
             
-            Node<E> newNode = new Node<>(e);
+            Node<E> newNode = newNode(e);
             //save the reference to the current element at that index
             //if we don't do this, we will lose the rest of the list after changing the current.next reference below
             Node<E> temp = current.next;
@@ -85,6 +100,9 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
             current.next = newNode;
             //reconnect the saved node to the new node
             newNode.next = temp;
+            //in doubly linked mode the links back have to be made as well
+            setPrevious(newNode, current);
+            setPrevious(temp, newNode);
             size++;
         }
     }
@@ -92,32 +110,16 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
     /** Replaces the element at the specified index, with the provided element.
      * Returns: Element that was previously on that position
      * Throws: IndexOutOfBoundsException if an element doesn't exist at the specified index. */
-    // Runtime complexity O(n)
+    // Runtime complexity O(n), in doubly linked mode at most n/2 nodes are visited
     public E set(int index, E e) {
         if(index < 0 || index >= size)
             throw new IndexOutOfBoundsException();
         
-        //start at the head
-        Node<E> current = head;
-        //and travel down the list to the node just before specified index
-        for (int i = 1; i < index; i++) {
-            current = current.next;
-        }
-        
-        //most of the process is going to be same as in add method above, look there for explanation
-        Node<E> newNode = new Node<>(e);
-        Node<E> temp = current.next;
-        current.next = newNode;
-        //reconnect the node AFTER the saved node to the new node,
-        // since we replaced the saved node with the new node
-        newNode.next = temp.next;
-        
-        if(head.equals(temp))
-            head = newNode;
-        if(tail.equals(temp))
-            tail = newNode;
-        
-        return temp.element;
+        //the node itself stays where it is, only the element it holds is replaced
+        Node<E> current = node(index);
+        E temp = current.element;
+        current.element = e;
+        return temp;
     }
     
     /** Returns: the first element from the list */
@@ -140,17 +142,27 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
     
     /** Returns: the element at the provided index
      * Throws: exception if invalid index is passed*/
-    // Runtime complexity O(n)
+    // Runtime complexity O(n), in doubly linked mode at most n/2 nodes are visited
     public E get(int index) {
         if(index < 0 || index >= size)
             throw new IndexOutOfBoundsException();
-        //start at the head
+        return node(index).element;
+    }
+    
+    /** Returns: the node at the specified index (which must be valid)
+     * In doubly linked mode the walk starts from the tail if that is closer to the index */
+    private Node<E> node(int index) {
+        if (doublyLinked && index > size / 2) {
+            Node<E> current = tail;
+            for (int i = size - 1; i > index; i--)
+                current = previous(current);
+            return current;
+        }
+        //start at the head and travel down the list to the specified index
         Node<E> current = head;
-        //and travel down the list to the node just before specified index
-        for (int i = 1; i <= index; i++) {
+        for (int i = 0; i < index; i++)
             current = current.next;
-        }
-        return current.element;
+        return current;
     }
     
     /** Checks if there is an element in the list matching the specified element
@@ -177,11 +189,21 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
     /** Returns: the index of the last matching element or -1 if no match was found. */
     // Runtime complexity O(n)
     public int lastIndexOf(E e) {
-        //if this was a doubly linked list we would start at tail and work backwards
-        //but since this is a singly linked list we need to check each element
         if(isEmpty())
             return -1;
         
+        //a doubly linked list can start at the tail and work backwards, stopping at the first match
+        if (doublyLinked) {
+            Node<E> current = tail;
+            for (int i = size - 1; i >= 0; i--) {
+                if(current.element.equals(e))
+                    return i;
+                current = previous(current);
+            }
+            return -1;
+        }
+        
+        //but a singly linked list needs to check each element
         int index = -1;
         Node<E> current = head;
         for (int i = 0; i < size; i++) {
@@ -203,6 +225,8 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
         else {
             E temp = head.element;
             head = head.next;
+            if (head != null)
+                setPrevious(head, null);
             size--;
             //reset the tail as well if removed item was the only one in the list
             //since tail was pointing to it as well
@@ -215,7 +239,7 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
     
     /** Removes the last element from the list.
      *  Returns: the element that was removed */
-    //Runtime Complexity: O(n)
+    //Runtime Complexity: O(n), O(1) in doubly linked mode
     public E removeLast() {
         if (size == 0)
             return null;
@@ -227,11 +251,8 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
             return temp;
         } else {
             //to remove the last element we need to find the one before it
-            //which requires traveling down the whole list starting from the head
-            Node<E> current = head;
-            for (int i = 0; i < size - 2; i++) {
-                current = current.next;
-            }
+            //a doubly linked tail knows it, otherwise it requires traveling down the whole list starting from the head
+            Node<E> current = doublyLinked ? previous(tail) : node(size - 2);
             //once we find the node before the last we can make it the new tail
             E temp = tail.element;
             tail = current;
@@ -253,15 +274,13 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
             return removeLast();
         
         else {
-            Node<E> current = head;
-            //tavel down the list to the node just before specified index
-            for (int i = 1; i < index; i++) {
-                current = current.next;
-            }
+            //tavel to the node just before specified index
+            Node<E> current = node(index - 1);
             Node<E> nodeToRemove = current.next;
             //set the current node to reference the node after the node that is being removed
             //this will leave the nodeToRemove without a reference and ready for GC
             current.next = nodeToRemove.next;
+            setPrevious(nodeToRemove.next, current);
             size--;
             
             return nodeToRemove.element;
@@ -306,6 +325,90 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
         return new MyLinkedListIterator();
     }
     
+    /** Returns: A spliterator over the elements, a parallel stream splits it into batches of elements */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new MyLinkedListSpliterator();
+    }
+    
+    /** Returns: A sequential stream of the elements */
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    
+    /** Returns: A parallel stream of the elements */
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+    
+    //A linked list can only be walked from the front, so it can't be cut in half without walking to the middle.
+    // Instead every split copies the next batch of elements into an array (which splits perfectly well on its own)
+    // and hands that off, the batches get bigger with every split so a long list is handed off in few steps.
+    //The head and the size are read when the stream actually starts, the list must not be changed while it runs
+    private class MyLinkedListSpliterator implements Spliterator<E> {
+        private static final int BATCH_UNIT = 1 << 10;
+        private static final int MAX_BATCH = 1 << 25;
+        
+        private Node<E> current;
+        private int remaining = -1; // -1 until first use
+        private int batch = 0; // size of the last batch handed off
+        
+        private int getRemaining() {
+            if (remaining < 0) {
+                current = head;
+                remaining = size;
+            }
+            return remaining;
+        }
+        
+        @Override
+        public Spliterator<E> trySplit() {
+            if (getRemaining() <= 1)
+                return null;
+            int count = Math.min(Math.min(batch + BATCH_UNIT, MAX_BATCH), remaining);
+            Object[] elements = new Object[count];
+            for (int i = 0; i < count; i++) {
+                elements[i] = current.element;
+                current = current.next;
+            }
+            batch = count;
+            remaining -= count;
+            return Spliterators.spliterator(elements, 0, count, Spliterator.ORDERED);
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (getRemaining() == 0)
+                return false;
+            E e = current.element;
+            current = current.next;
+            remaining--;
+            action.accept(e);
+            return true;
+        }
+        
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            getRemaining();
+            while (remaining > 0) {
+                E e = current.element;
+                current = current.next;
+                remaining--;
+                action.accept(e);
+            }
+        }
+        
+        @Override
+        public long estimateSize() {
+            return getRemaining();
+        }
+        
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+    
     private class MyLinkedListIterator
             implements Iterator<E> {
         
@@ -324,6 +427,22 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
         }
     }
     
+    /** Returns: a new node for the element, with a link back to the previous node in doubly linked mode */
+    private Node<E> newNode(E e) {
+        return doublyLinked ? new DoublyLinkedNode<>(e) : new Node<>(e);
+    }
+    
+    /** Returns: the node before the provided one (only valid in doubly linked mode) */
+    private Node<E> previous(Node<E> node) {
+        return ((DoublyLinkedNode<E>) node).previous;
+    }
+    
+    /** Links the node back to the previous node (does nothing for a singly linked list) */
+    private void setPrevious(Node<E> node, Node<E> previous) {
+        if (doublyLinked)
+            ((DoublyLinkedNode<E>) node).previous = previous;
+    }
+    
     /** the core of any linked list is the node system
      * where each node knows only about the existence of the node that comes after it*/
     private static class Node<E> {
@@ -342,5 +461,14 @@ public class MyGenericLinkedList<E> implements Iterable<E>{
                     '}';
         }
     }
+    
+    /** A node that also knows about the node that comes before it, used in doubly linked mode
+     * (a separate class, so the nodes of a singly linked list don't carry an unused reference) */
+    private static class DoublyLinkedNode<E> extends Node<E> {
+        Node<E> previous;
+        
+        public DoublyLinkedNode(E element) {
+            super(element);
+        }
+    }
 }
-
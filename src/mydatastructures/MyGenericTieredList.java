@@ -0,0 +1,443 @@
+package mydatastructures;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A list with the same methods as MyGenericArrayList, built for inserting and removing in the middle of large lists (a tiered vector).
+ * The elements are kept in blocks of equal size (a power of two, about the square root of the size of the list),
+ * and every block is a circular buffer. All blocks except the last one are always full,
+ * so element i is in block i / blockSize, and get()/set() are O(1) like in an array list.
+ * Inserting in the middle only shifts the elements of one block, and then moves one element from the end of each
+ * following block to the start of the next one (O(1) in a circular buffer), so it costs O(sqrt(n)) instead of O(n).
+ */
+public class MyGenericTieredList<E> implements Iterable<E> {
+    // smallest block is 16 elements
+    private static final int MIN_BLOCK_SHIFT = 4;
+    
+    // blocks[0..blockCount-1] are in use, every block is an array of blockSize elements (Object[] for the same reasons
+    // as the elements of MyGenericArrayList, see the note there)
+    private Object[][] blocks;
+    // the slot of the first element of each block, a block is a circular buffer so its elements start anywhere
+    private int[] offsets;
+    private int blockCount;
+    // blockSize is 1 << blockShift, mask is blockSize - 1
+    private int blockShift;
+    private int mask;
+    private int size = 0; // Number of elements in the list
+    
+    /** Default constructor for an empty list */
+    public MyGenericTieredList() {
+        allocate(MIN_BLOCK_SHIFT, 2);
+    }
+    
+    /** Creates a list from an array of elements of type E */
+    public MyGenericTieredList(E[] elements) {
+        this();
+        addAll(0, elements);
+    }
+    
+    private void allocate(int shift, int blockCapacity) {
+        blockShift = shift;
+        mask = (1 << shift) - 1;
+        blocks = new Object[Math.max(2, blockCapacity)][];
+        offsets = new int[blocks.length];
+        blockCount = 0;
+    }
+    
+    /** Adds an empty block after the last one */
+    private void addBlock() {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+            offsets = Arrays.copyOf(offsets, blockCount * 2);
+        }
+        blocks[blockCount] = new Object[1 << blockShift];
+        offsets[blockCount] = 0;
+        blockCount++;
+    }
+    
+    /** Adds a new element to the end of the list */
+    //Runtime complexity: O(1) (Amortized)
+    public void add(E e) {
+        if (size == blockCount << blockShift)
+            addBlock();
+        int block = size >>> blockShift;
+        blocks[block][(offsets[block] + size) & mask] = e;
+        size++;
+        adjustBlockSize();
+    }
+    
+    /** Adds a new element at the specified index */
+    //Runtime complexity: O(sqrt(n)) - shifting within one block is O(blockSize), and one element is moved per following block
+    public void add(int index, E e) {
+        //index can be equal to size, that means the element goes to the end of the list
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException
+                    ("Index: " + index + ", Size: " + size);
+        if (size == blockCount << blockShift)
+            addBlock();
+        
+        int target = index >>> blockShift;
+        // the block that has room for one more element, every block before it is full
+        int last = size >>> blockShift;
+        //make room in the target block: the last element of every full block moves to the front of the next block,
+        // starting from the end so each block has a free slot when its turn comes
+        for (int b = last; b > target; b--) {
+            Object[] previous = blocks[b - 1];
+            int previousLast = (offsets[b - 1] + mask) & mask;
+            offsets[b] = (offsets[b] - 1) & mask;
+            blocks[b][offsets[b]] = previous[previousLast];
+            previous[previousLast] = null;
+        }
+        
+        Object[] block = blocks[target];
+        int count = target == last ? size & mask : mask; // elements in the target block right now
+        int position = index & mask;
+        //shift whichever side of the insert position is shorter
+        if (position < count / 2) {
+            offsets[target] = (offsets[target] - 1) & mask;
+            for (int i = 0; i < position; i++)
+                block[(offsets[target] + i) & mask] = block[(offsets[target] + i + 1) & mask];
+        } else {
+            for (int i = count; i > position; i--)
+                block[(offsets[target] + i) & mask] = block[(offsets[target] + i - 1) & mask];
+        }
+        block[(offsets[target] + position) & mask] = e;
+        size++;
+        adjustBlockSize();
+    }
+    
+    /** Inserts all elements of the array at the specified index, in the same order */
+    //Runtime complexity: O(k * sqrt(n)) for a few elements, O(n + k) for many (k being the number of elements added)
+    public void addAll(int index, E[] newElements) {
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException
+                    ("Index: " + index + ", Size: " + size);
+        if (newElements.length <= (1 << blockShift)) {
+            for (int i = 0; i < newElements.length; i++)
+                add(index + i, newElements[i]);
+            return;
+        }
+        //many elements, it's cheaper to lay the whole list out again
+        Object[] all = new Object[size + newElements.length];
+        copyTo(0, index, all, 0);
+        System.arraycopy(newElements, 0, all, index, newElements.length);
+        copyTo(index, size, all, index + newElements.length);
+        rebuild(all, all.length);
+    }
+    
+    /** Inserts all elements of the collection at the specified index, in the order of the collection's iterator */
+    @SuppressWarnings("unchecked") // safe, the array only holds elements of the collection, which are all of type E
+    public void addAll(int index, Collection<? extends E> collection) {
+        addAll(index, (E[]) collection.toArray());
+    }
+    
+    /** Removes an element by index
+     *  Returns: The element that was removed. */
+    //Runtime complexity: O(sqrt(n))
+    public E remove(int index) {
+        checkIndex(index);
+        int target = index >>> blockShift;
+        int last = (size - 1) >>> blockShift; // last block that holds elements
+        Object[] block = blocks[target];
+        int count = target == last ? size - (last << blockShift) : mask + 1;
+        int position = index & mask;
+        E removed = elementAt(index);
+        
+        //close the gap from whichever side is shorter
+        if (position < count / 2) {
+            for (int i = position; i > 0; i--)
+                block[(offsets[target] + i) & mask] = block[(offsets[target] + i - 1) & mask];
+            block[offsets[target]] = null;
+            offsets[target] = (offsets[target] + 1) & mask;
+        } else {
+            for (int i = position; i < count - 1; i++)
+                block[(offsets[target] + i) & mask] = block[(offsets[target] + i + 1) & mask];
+            block[(offsets[target] + count - 1) & mask] = null;
+        }
+        //every following block gives its first element to the end of the block before it, so those stay full
+        for (int b = target + 1; b <= last; b++) {
+            Object[] next = blocks[b];
+            int first = offsets[b];
+            blocks[b - 1][(offsets[b - 1] + mask) & mask] = next[first];
+            next[first] = null;
+            offsets[b] = (first + 1) & mask;
+        }
+        size--;
+        
+        //one empty block is kept at the end, so adding and removing at a block boundary doesn't allocate every time
+        if (size <= (blockCount - 2) << blockShift)
+            blocks[--blockCount] = null;
+        adjustBlockSize();
+        return removed;
+    }
+    
+    /**Removes the specified element from the list.
+     * Returns: the element that was removed */
+    //Runtime complexity: O(n)
+    public E remove(E e) {
+        //remove(index) will throw an exception if the element is not in the list
+        return remove(indexOf(e));
+    }
+    
+    /** Removes the elements from index 'from' (inclusive) to index 'to' (exclusive) */
+    //Runtime complexity: O(n)
+    public void removeRange(int from, int to) {
+        if (from < 0 || to > size || from > to)
+            throw new IndexOutOfBoundsException
+                    ("From: " + from + ", To: " + to + ", Size: " + size);
+        if (to - from <= 1 << blockShift) {
+            for (int i = from; i < to; i++)
+                remove(from);
+            return;
+        }
+        Object[] all = new Object[size - (to - from)];
+        copyTo(0, from, all, 0);
+        copyTo(to, size, all, from);
+        rebuild(all, all.length);
+    }
+    
+    /** Removes all elements for which the filter returns true
+     * Returns: true if any element was removed */
+    //Runtime complexity: O(n), the elements that stay are collected in one pass and the blocks are filled again
+    public boolean removeIf(Predicate<? super E> filter) {
+        Object[] kept = new Object[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            E e = elementAt(i);
+            if (!filter.test(e))
+                kept[count++] = e;
+        }
+        if (count == size)
+            return false;
+        rebuild(kept, count);
+        return true;
+    }
+    
+    /** Replaces every element with the result of the operator applied to it */
+    //Runtime complexity: O(n)
+    public void replaceAll(UnaryOperator<E> operator) {
+        for (int i = 0; i < size; i++) {
+            int block = i >>> blockShift;
+            int slot = (offsets[block] + i) & mask;
+            blocks[block][slot] = operator.apply(elementAt(i));
+        }
+    }
+    
+    /** Copies the elements from index 'from' to 'to' (exclusive) into the array, starting at arrayIndex */
+    private void copyTo(int from, int to, Object[] array, int arrayIndex) {
+        for (int i = from; i < to; i++)
+            array[arrayIndex++] = elementAt(i);
+    }
+    
+    //The block size follows the size of the list, so both the shifting inside a block (blockSize)
+    // and the number of blocks to visit (size / blockSize) stay around sqrt(n).
+    //It doubles once there are more than 2 * blockSize blocks, and halves when the list shrinks to a quarter of blockSize^2,
+    // the gap between the two keeps a list that hovers around a limit from being rebuilt over and over
+    private void adjustBlockSize() {
+        long blockSize = 1L << blockShift;
+        if (size > 2 * blockSize * blockSize || (blockShift > MIN_BLOCK_SHIFT && size < blockSize * blockSize / 4)) {
+            Object[] all = new Object[size];
+            copyTo(0, size, all, 0);
+            rebuild(all, size);
+        }
+    }
+    
+    /** Puts the first count elements of the array into new blocks, with a block size that suits that many elements */
+    //Runtime complexity: O(n)
+    private void rebuild(Object[] all, int count) {
+        int shift = MIN_BLOCK_SHIFT;
+        while (count > 2L << (2 * shift))
+            shift++;
+        allocate(shift, ((count + (1 << shift) - 1) >>> shift) + 1);
+        size = 0;
+        while (size < count) {
+            addBlock();
+            int n = Math.min(1 << shift, count - size);
+            System.arraycopy(all, size, blocks[blockCount - 1], 0, n);
+            size += n;
+        }
+    }
+    
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException
+                    ("Index: " + index + ", Size: " + size);
+    }
+    
+    @SuppressWarnings("unchecked") // safe, the blocks only ever receive elements of type E
+    private E elementAt(int index) {
+        int block = index >>> blockShift;
+        return (E) blocks[block][(offsets[block] + index) & mask];
+    }
+    
+    /** Clears the list */
+    public void clear() {
+        allocate(MIN_BLOCK_SHIFT, 2);
+        size = 0;
+    }
+    
+    /** Checks if the list contains specified element.
+     * Returns: true if the specified element is in the list. */
+    public boolean contains(E e) {
+        return indexOf(e) >= 0;
+    }
+    
+    /** Returns: the element at the specified index */
+    //Runtime complexity: O(1)
+    public E get(int index) {
+        checkIndex(index);
+        return elementAt(index);
+    }
+    
+    /** Replaces the element at the specified index with the specified element.
+     * Returns: the element that was previously on the specified index */
+    //Runtime complexity: O(1)
+    public E set(int index, E e) {
+        checkIndex(index);
+        int block = index >>> blockShift;
+        int slot = (offsets[block] + index) & mask;
+        E temp = elementAt(index);
+        blocks[block][slot] = e;
+        return temp;
+    }
+    
+    /** Finds the index of the first element int the list that matches the specified element.
+     *  Returns: Index of the element or -1 if no match was found. */
+    public int indexOf(E e) {
+        for (int i = 0; i < size; i++)
+            if (Objects.equals(e, elementAt(i))) return i;
+        
+        return -1;
+    }
+    
+    /** Finds the index of the last element in the list that matches the specified element.
+     *  Returns: Index of the element or -1 if no match was found. */
+    public int lastIndexOf(E e) {
+        for (int i = size - 1; i >= 0; i--)
+            if (Objects.equals(e, elementAt(i))) return i;
+        
+        return -1;
+    }
+    
+    /** Returns: Count of elements in the list */
+    public int size() {
+        return size;
+    }
+    
+    /** Trims the capacity to current size (drops the spare block and the unused room in the block index) */
+    public void trimToSize() {
+        if (size <= (blockCount - 1) << blockShift)
+            blocks[--blockCount] = null;
+        blocks = Arrays.copyOf(blocks, Math.max(2, blockCount));
+        offsets = Arrays.copyOf(offsets, blocks.length);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        
+        for (int i = 0; i < size; i++) {
+            sb.append(elementAt(i));
+            sb.append(", ");
+        }
+        if (sb.length() > 2) {
+            sb.deleteCharAt(sb.length() - 1);
+            sb.deleteCharAt(sb.length() - 1);
+        }
+        
+        sb.append("]");
+        return sb.toString();
+    }
+    
+    @Override
+    public Iterator<E> iterator() {
+        return new MyTieredListIterator();
+    }
+    
+    private class MyTieredListIterator implements Iterator<E> {
+        
+        private int currentIndex = 0;
+        
+        @Override
+        public boolean hasNext() {
+            return currentIndex < size;
+        }
+        
+        @Override
+        public E next() {
+            if (currentIndex >= size)
+                throw new NoSuchElementException();
+            return elementAt(currentIndex++);
+        }
+    }
+    
+    /** Returns: A spliterator over the elements, a parallel stream splits it into halves of the index range */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new MyTieredListSpliterator(0, -1);
+    }
+    
+    /** Returns: A sequential stream of the elements */
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    
+    /** Returns: A parallel stream of the elements */
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+    
+    //same as the spliterator of MyGenericArrayList, the size is read when the stream starts
+    private class MyTieredListSpliterator implements Spliterator<E> {
+        private int index;
+        private int fence; // -1 until first use
+        
+        MyTieredListSpliterator(int index, int fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+        
+        private int getFence() {
+            if (fence < 0)
+                fence = size;
+            return fence;
+        }
+        
+        @Override
+        public Spliterator<E> trySplit() {
+            int high = getFence(), low = index, middle = (low + high) >>> 1;
+            if (low >= middle)
+                return null;
+            index = middle;
+            return new MyTieredListSpliterator(low, middle);
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (index >= getFence())
+                return false;
+            action.accept(elementAt(index++));
+            return true;
+        }
+        
+        @Override
+        public long estimateSize() {
+            return getFence() - index;
+        }
+        
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+}
\ No newline at end of file
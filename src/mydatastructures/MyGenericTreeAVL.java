@@ -120,6 +120,7 @@ public class MyGenericTreeAVL<E extends Comparable<E>> extends MyGenericTreeBST<
         }
         
         size--;
+        modCount++;
         return true;
     }
     
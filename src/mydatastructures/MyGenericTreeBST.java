@@ -1,14 +1,22 @@
 package mydatastructures;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class MyGenericTreeBST<E extends Comparable<E>> implements Iterable<E> {
     
     protected MyTreeNode<E> treeRoot;
     protected int size = 0;
     protected Comparator<E> comparator;
+    // counts insertions and deletions, a spliterator uses it to notice that the tree was changed under it
+    protected int modCount = 0;
     
     /**
      * Creates a binary search tree, default comparator is the natural order comparator
@@ -69,6 +77,7 @@ public class MyGenericTreeBST<E extends Comparable<E>> implements Iterable<E> {
         }
         
         size++;
+        modCount++;
         return true;
     }
     
@@ -145,6 +154,7 @@ public class MyGenericTreeBST<E extends Comparable<E>> implements Iterable<E> {
         }
         
         size--;
+        modCount++;
         return true;
     }
     
@@ -154,6 +164,7 @@ public class MyGenericTreeBST<E extends Comparable<E>> implements Iterable<E> {
     public void clear() {
         treeRoot = null;
         size = 0;
+        modCount++;
     }
     
     /**
@@ -241,6 +252,149 @@ public class MyGenericTreeBST<E extends Comparable<E>> implements Iterable<E> {
         return new InorderIterator();
     }
     
+    /**
+     * Returns: A spliterator over the elements in sorted (inorder) order,
+     * a parallel stream splits it into subtrees, so every thread walks its own part of the tree
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new SubtreeSpliterator(treeRoot, size, modCount);
+    }
+    
+    /**
+     * Returns: A sequential stream of the elements, in sorted order
+     */
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    
+    /**
+     * Returns: A parallel stream of the elements
+     */
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+    
+    //The elements that are left to visit are kept as a sequence of pieces, in order,
+    // each piece is either a single node or a whole subtree (a node together with everything below it).
+    //Splitting breaks a single remaining subtree into its left subtree, its root and its right subtree,
+    // and hands off every piece except the last one - in a balanced tree (like the AVL tree) that is about half of the elements.
+    //Fail-fast: if the tree is changed while the stream runs, it throws ConcurrentModificationException
+    private class SubtreeSpliterator implements Spliterator<E> {
+        private final ArrayDeque<Piece<E>> pieces = new ArrayDeque<>();
+        private long estimate;
+        // only a spliterator that was never split knows exactly how many elements it has
+        private boolean exact;
+        private final int expectedModCount;
+        
+        SubtreeSpliterator(MyTreeNode<E> root, long estimate, int expectedModCount) {
+            if (root != null)
+                pieces.add(new Piece<>(root, true));
+            this.estimate = estimate;
+            this.exact = true;
+            this.expectedModCount = expectedModCount;
+        }
+        
+        /**
+         * Replaces a subtree piece at the front with its left subtree, its root and its right subtree
+         */
+        private void expand(Piece<E> subtree) {
+            MyTreeNode<E> node = subtree.node;
+            if (node.right != null)
+                pieces.addFirst(new Piece<>(node.right, true));
+            pieces.addFirst(new Piece<>(node, false));
+            if (node.left != null)
+                pieces.addFirst(new Piece<>(node.left, true));
+        }
+        
+        @Override
+        public Spliterator<E> trySplit() {
+            if (pieces.size() == 1 && pieces.peekFirst().subtree)
+                expand(pieces.pollFirst());
+            if (pieces.size() < 2)
+                return null;
+            SubtreeSpliterator prefix = new SubtreeSpliterator(null, estimate >>> 1, expectedModCount);
+            prefix.exact = false;
+            while (pieces.size() > 1)
+                prefix.pieces.addLast(pieces.pollFirst());
+            estimate -= prefix.estimate;
+            exact = false;
+            return prefix;
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            while (!pieces.isEmpty()) {
+                Piece<E> piece = pieces.pollFirst();
+                if (piece.subtree && (piece.node.left != null || piece.node.right != null)) {
+                    expand(piece);
+                    continue;
+                }
+                if (estimate > 0)
+                    estimate--;
+                action.accept(piece.node.element);
+                return true;
+            }
+            return false;
+        }
+        
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            ArrayDeque<MyTreeNode<E>> stack = new ArrayDeque<>();
+            for (Piece<E> piece = pieces.pollFirst(); piece != null; piece = pieces.pollFirst()) {
+                if (!piece.subtree) {
+                    action.accept(piece.node.element);
+                    continue;
+                }
+                //inorder walk with an explicit stack, an unbalanced BST can be too deep for recursion
+                MyTreeNode<E> node = piece.node;
+                while (node != null || !stack.isEmpty()) {
+                    for (; node != null; node = node.left)
+                        stack.push(node);
+                    node = stack.pop();
+                    action.accept(node.element);
+                    node = node.right;
+                }
+            }
+            estimate = 0;
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+        
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+        
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | (exact ? Spliterator.SIZED : 0);
+        }
+        
+        /**
+         * Returns: null if the elements are sorted in their natural order, otherwise the comparator of the tree
+         */
+        @Override
+        public Comparator<? super E> getComparator() {
+            return comparator == Comparator.<E>naturalOrder() ? null : comparator;
+        }
+    }
+    
+    /**
+     * Part of the elements a SubtreeSpliterator has left, a single node or a whole subtree
+     */
+    private static final class Piece<E> {
+        final MyTreeNode<E> node;
+        final boolean subtree;
+        
+        Piece(MyTreeNode<E> node, boolean subtree) {
+            this.node = node;
+            this.subtree = subtree;
+        }
+    }
+    
     // Custom iterator inner class
     private class InorderIterator implements Iterator<E> {
         // Store the elements in a list
@@ -0,0 +1,55 @@
+package mydatastructures;
+
+/**
+ * Decides how much larger the internal array of a MyGenericArrayList gets when it runs out of room.
+ * Growing by a lot means fewer copies of the whole array, growing by a little means less unused memory.
+ * A few common policies are provided below, any other one can be passed as a lambda.
+ */
+@FunctionalInterface
+public interface MyGrowthPolicy {
+    
+    //the largest array the JVM can reliably allocate (some VMs reserve a few header words in the array)
+    int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    
+    /**
+     * Returns: The new capacity for a list that has room for currentCapacity elements and needs room for at least minCapacity
+     * (a smaller result is raised to minCapacity by the list)
+     */
+    int newCapacity(int currentCapacity, int minCapacity);
+    
+    /**
+     * Doubles the capacity, +1 so an empty list (for example after trimToSize()) can grow too.
+     * This is the default policy of MyGenericArrayList
+     */
+    MyGrowthPolicy DOUBLING = (currentCapacity, minCapacity) -> limit(currentCapacity * 2L + 1);
+    
+    /**
+     * Grows by half of the current capacity (same as java.util.ArrayList), the array is copied more often than with DOUBLING
+     * but at most a third of it is unused
+     */
+    MyGrowthPolicy ONE_AND_A_HALF = (currentCapacity, minCapacity) -> limit(currentCapacity + (currentCapacity >> 1) + 1L);
+    
+    /**
+     * Returns: A policy that adds the same number of slots every time,
+     * at most step - 1 slots are unused but every element is copied O(n / step) times
+     */
+    static MyGrowthPolicy fixedStep(int step) {
+        if (step < 1)
+            throw new IllegalArgumentException("Step must be positive: " + step);
+        return (currentCapacity, minCapacity) -> limit((long) currentCapacity + step);
+    }
+    
+    /**
+     * Returns: A policy that doubles the capacity until that would add more than maxStep slots, and then grows by maxStep,
+     * so a huge list doesn't end up with up to half of its array unused
+     */
+    static MyGrowthPolicy cappedDoubling(int maxStep) {
+        if (maxStep < 1)
+            throw new IllegalArgumentException("Step must be positive: " + maxStep);
+        return (currentCapacity, minCapacity) -> limit(currentCapacity + Math.min(currentCapacity + 1L, maxStep));
+    }
+    
+    private static int limit(long capacity) {
+        return (int) Math.min(capacity, MAX_ARRAY_SIZE);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,160 @@
+package mydatastructures;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Snapshot of the shape and usage of a hash table (MyGenericHashMap or MyGenericHashSet)
+ * Taken by calling statistics() on the map or set, later changes to the table are not reflected in it.
+ * The call counters and the resize counters only count while statistics are enabled on the table,
+ * the shape (histogram, depth, empty ratio) is always measured at the time the snapshot is taken.
+ */
+public final class MyHashStatistics {
+    
+    private final int capacity;
+    private final int size;
+    //histogram[i] is the number of buckets that hold exactly i entries (chaining),
+    // or the number of keys that are found after probing exactly i slots (open addressing),
+    // or the number of elements that are found in the i-th group probed (grouped probing, see MySwissTable)
+    private final long[] histogram;
+    private final int maxDepth;
+    private final double emptyBucketRatio;
+    private final long rehashCount;
+    private final long rehashNanos;
+    private final long getCount;
+    private final long putCount;
+    private final long removeCount;
+    
+    //counters are only created when statistics are enabled, and they are updated by the table itself
+    // (plain fields, the tables are not thread safe anyway)
+    static final class Counters {
+        long gets;
+        long puts;
+        long removes;
+        long rehashes;
+        long rehashNanos;
+    }
+    
+    /**
+     * Creates the snapshot, the histogram is trimmed to the longest chain (or probe sequence) that actually occurs
+     */
+    MyHashStatistics(int capacity, int size, long[] histogram, long emptyBuckets, Counters counters) {
+        this.capacity = capacity;
+        this.size = size;
+        int depth = histogram.length - 1;
+        while (depth > 0 && histogram[depth] == 0)
+            depth--;
+        this.histogram = Arrays.copyOf(histogram, depth + 1);
+        this.maxDepth = depth;
+        this.emptyBucketRatio = capacity == 0 ? 0 : emptyBuckets / (double) capacity;
+        
+        if (counters == null)
+            counters = new Counters();
+        this.rehashCount = counters.rehashes;
+        this.rehashNanos = counters.rehashNanos;
+        this.getCount = counters.gets;
+        this.putCount = counters.puts;
+        this.removeCount = counters.removes;
+    }
+    
+    /**
+     * Returns: The number of buckets (or slots) of the table
+     */
+    public int capacity() {
+        return capacity;
+    }
+    
+    /**
+     * Returns: The number of entries in the table
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns: The chain length distribution, element i is the number of buckets that hold exactly i entries,
+     * for a table in open addressing mode it's the probe length distribution instead,
+     * element i is the number of keys that are found after probing exactly i slots
+     * (or i groups of 16 slots for a set in grouped probing mode)
+     */
+    public long[] histogram() {
+        return histogram.clone();
+    }
+    
+    /**
+     * Returns: The length of the longest chain (or the longest probe sequence in open addressing mode)
+     */
+    //a bucket that is indexed by a tree (see MyTreeBucket) is still counted with its full length
+    public int maxDepth() {
+        return maxDepth;
+    }
+    
+    /**
+     * Returns: The share of buckets (or slots) that are empty, between 0 and 1
+     */
+    public double emptyBucketRatio() {
+        return emptyBucketRatio;
+    }
+    
+    /**
+     * Returns: How many times the table was resized
+     */
+    public long rehashCount() {
+        return rehashCount;
+    }
+    
+    /**
+     * Returns: The total time spent resizing, in nanoseconds
+     * (for an incremental resize that includes the time spent moving buckets during later operations)
+     */
+    public long rehashNanos() {
+        return rehashNanos;
+    }
+    
+    /**
+     * Returns: The number of lookups (get/containsKey, contains)
+     */
+    public long getCount() {
+        return getCount;
+    }
+    
+    /**
+     * Returns: The number of insertions and updates (put, putIfAbsent, compute, merge..., add)
+     */
+    public long putCount() {
+        return putCount;
+    }
+    
+    /**
+     * Returns: The number of removals
+     */
+    public long removeCount() {
+        return removeCount;
+    }
+    
+    /**
+     * Returns: All values of this snapshot under flat names, in a fixed order (handy for exporting them as metrics)
+     * The histogram is exported as "histogram.0", "histogram.1" ... up to the max depth
+     */
+    public Map<String, Number> asMap() {
+        Map<String, Number> map = new LinkedHashMap<>();
+        map.put("capacity", capacity);
+        map.put("size", size);
+        map.put("maxDepth", maxDepth);
+        map.put("emptyBucketRatio", emptyBucketRatio);
+        map.put("rehashCount", rehashCount);
+        map.put("rehashNanos", rehashNanos);
+        map.put("getCount", getCount);
+        map.put("putCount", putCount);
+        map.put("removeCount", removeCount);
+        for (int i = 0; i < histogram.length; i++)
+            map.put("histogram." + i, histogram[i]);
+        return map;
+    }
+    
+    @Override
+    public String toString() {
+        return "MyHashStatistics" + asMap();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,242 @@
+package mydatastructures;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A list of int values, a primitive version of MyGenericArrayList<Integer>
+ * The values are stored unboxed in an int[], so a value takes 4 bytes instead of a reference plus an Integer object,
+ * and reading one doesn't need to follow a pointer.
+ * On top of the MyGenericArrayList methods it has bulk addAll()/toArray() and sum(), min() and max() of all values.
+ */
+//The scans (sum, min, max, indexOf) are plain counted loops over a local copy of the array,
+// which is the shape the JIT compiler turns into SIMD instructions, so they run at close to memory bandwidth
+// without needing the (incubator) Vector API
+public class MyIntArrayList implements Iterable<Integer> {
+    public static final int INITIAL_CAPACITY = 16;
+    
+    private int[] elements = new int[INITIAL_CAPACITY];
+    private int size = 0; // Number of elements in the list
+    
+    /** Default constructor for an empty list */
+    public MyIntArrayList() {}
+    
+    /** Creates a list from an array of values */
+    public MyIntArrayList(int[] values) {
+        addAll(values);
+    }
+    
+    /** Adds a new value to the end of the list */
+    //Runtime complexity: O(1) (Amortized), O(n) worst case when capacity needs to be increased
+    public void add(int e) {
+        if (size == elements.length)
+            grow(size + 1);
+        elements[size++] = e;
+    }
+    
+    /** Adds a new value at the specified index */
+    //Runtime complexity: O(n)
+    public void add(int index, int e) {
+        //index can be equal to size, that means the value goes to the end of the list
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException
+                    ("Index: " + index + ", Size: " + size);
+        if (size == elements.length)
+            grow(size + 1);
+        // Make place for the new value by shifting the values after the index to the right
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = e;
+        size++;
+    }
+    
+    /** Adds all values of the array to the end of the list */
+    //Runtime complexity: O(m), m being the number of values added, the list grows at most once
+    public void addAll(int[] values) {
+        if (size + values.length > elements.length)
+            grow(size + values.length);
+        System.arraycopy(values, 0, elements, size, values.length);
+        size += values.length;
+    }
+    
+    /** Internal helper method that makes room for at least minCapacity values
+     * Creates a new internal array, with doubled size + 1 (or more if needed) */
+    //Runtime complexity: O(n)
+    private void grow(int minCapacity) {
+        //+1 is for an empty list after trimToSize(), doubling a capacity of 0 would still be 0
+        int newCapacity = (int) Math.min(Math.max((long) elements.length * 2 + 1, minCapacity), Integer.MAX_VALUE - 8);
+        if (newCapacity < minCapacity)
+            throw new OutOfMemoryError("List is too large");
+        elements = Arrays.copyOf(elements, newCapacity);
+    }
+    
+    /** Removes a value by index
+     *  Shifts any subsequent values leftward
+     *  Returns: The value that was removed. */
+    //Runtime complexity: O(n)
+    public int remove(int index) {
+        checkIndex(index);
+        int e = elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        return e;
+    }
+    
+    /** Removes the first occurrence of the specified value from the list
+     * (named differently from MyGenericArrayList.remove(E), since remove(int) already removes by index)
+     * Returns: the value that was removed */
+    //Runtime complexity: O(n)
+    public int removeValue(int e) {
+        //remove(index) will throw an exception if the value is not in the list
+        return remove(indexOf(e));
+    }
+    
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException
+                    ("Index: " + index + ", Size: " + size);
+    }
+    
+    /** Clears the list */
+    public void clear() {
+        elements = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+    
+    /** Checks if the list contains specified value.
+     * Returns: true if the specified value is in the list. */
+    public boolean contains(int e) {
+        return indexOf(e) >= 0;
+    }
+    
+    /** Returns: the value at the specified index */
+    public int get(int index) {
+        checkIndex(index);
+        return elements[index];
+    }
+    
+    /** Replaces the value at the specified index with the specified value.
+     * Returns: the value that was previously on the specified index */
+    public int set(int index, int e) {
+        checkIndex(index);
+        int temp = elements[index];
+        elements[index] = e;
+        return temp;
+    }
+    
+    /** Finds the index of the first value in the list that is equal to the specified value.
+     *  Returns: Index of the value or -1 if no match was found. */
+    //the loop can stop early, so unlike sum() it isn't vectorized, but it still reads the memory in order
+    public int indexOf(int e) {
+        int[] a = elements;
+        for (int i = 0, n = size; i < n; i++)
+            if (a[i] == e) return i;
+        
+        return -1;
+    }
+    
+    /** Finds the index of the last value in the list that is equal to the specified value.
+     *  Returns: Index of the value or -1 if no match was found. */
+    public int lastIndexOf(int e) {
+        int[] a = elements;
+        for (int i = size - 1; i >= 0; i--)
+            if (a[i] == e) return i;
+        
+        return -1;
+    }
+    
+    /** Returns: The sum of all values (0 for an empty list), as a long so it can't overflow */
+    //Runtime complexity: O(n)
+    public long sum() {
+        //the fields are copied into locals, so the JIT knows they can't change during the loop
+        int[] a = elements;
+        long sum = 0;
+        for (int i = 0, n = size; i < n; i++)
+            sum += a[i];
+        return sum;
+    }
+    
+    /** Returns: The smallest value in the list
+     * Throws: NoSuchElementException if the list is empty */
+    //Runtime complexity: O(n)
+    public int min() {
+        if (size == 0)
+            throw new NoSuchElementException("List is empty");
+        int[] a = elements;
+        int min = a[0];
+        for (int i = 1, n = size; i < n; i++)
+            min = Math.min(min, a[i]);
+        return min;
+    }
+    
+    /** Returns: The largest value in the list
+     * Throws: NoSuchElementException if the list is empty */
+    //Runtime complexity: O(n)
+    public int max() {
+        if (size == 0)
+            throw new NoSuchElementException("List is empty");
+        int[] a = elements;
+        int max = a[0];
+        for (int i = 1, n = size; i < n; i++)
+            max = Math.max(max, a[i]);
+        return max;
+    }
+    
+    /** Returns: A new array with all values of the list, in order */
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+    
+    /** Returns: Count of values in the list */
+    public int size() {
+        return size;
+    }
+    
+    /** Trims the capacity to current size */
+    public void trimToSize() {
+        if (size != elements.length)
+            elements = Arrays.copyOf(elements, size);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        
+        for (int i = 0; i < size; i++) {
+            sb.append(elements[i]);
+            sb.append(", ");
+        }
+        //delete the comma and space after the last value
+        if (sb.length() > 2) {
+            sb.deleteCharAt(sb.length() - 1);
+            sb.deleteCharAt(sb.length() - 1);
+        }
+        
+        sb.append("]");
+        return sb.toString();
+    }
+    
+    /** Returns: An iterator over the values, nextInt() reads a value without boxing it */
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new MyIntArrayListIterator();
+    }
+    
+    private class MyIntArrayListIterator implements PrimitiveIterator.OfInt {
+        
+        private int currentIndex = 0;
+        
+        @Override
+        public boolean hasNext() {
+            return currentIndex < size;
+        }
+        
+        @Override
+        public int nextInt() {
+            if (currentIndex >= size)
+                throw new NoSuchElementException();
+            return elements[currentIndex++];
+        }
+    }
+
+}
\ No newline at end of file
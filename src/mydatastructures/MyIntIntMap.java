@@ -0,0 +1,299 @@
+package mydatastructures;
+
+import java.util.Arrays;
+
+/**
+ * A map from int keys to int values, a primitive version of MyGenericHashMap<Integer, Integer>
+ * Keys and values are stored unboxed in two int arrays using open addressing (linear probing),
+ * so there is no Integer object, entry object or list node allocated per mapping.
+ */
+//For the details on linear probing and backward shift deletion see MyOpenAddressingTable,
+// this class is the same algorithm with int[] instead of Object[].
+public class MyIntIntMap {
+    
+    private static final int START_CAP_DEFAULT = 4;
+    private static final float LOAD_FACTOR_DEFAULT = 0.75f;
+    private static final float MAX_LOAD_FACTOR = 0.9f;
+    private static final int MAX_CAP = 1 << 30;
+    
+    //An int[] has no null, so one key value has to be reserved to mark an empty slot.
+    // 0 is used as that sentinel (new arrays are already filled with 0, no need to fill them)
+    // and the key 0 itself is stored outside of the arrays, in the two fields below.
+    private static final int EMPTY = 0;
+    private boolean hasZeroKey = false;
+    private int zeroKeyValue;
+    
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size = 0;
+    private int resizeThreshold;
+    private final float loadFactorLimit;
+    
+    /**
+     * Default constructor
+     */
+    public MyIntIntMap() {
+        this(START_CAP_DEFAULT, LOAD_FACTOR_DEFAULT);
+    }
+    
+    /**
+     * Constructs a map with default load factor and the desired initial capacity
+     */
+    public MyIntIntMap(int initialCapacity) {
+        this(initialCapacity, LOAD_FACTOR_DEFAULT);
+    }
+    
+    /**
+     * Constructs a map with provided starting capacity and load factor
+     */
+    public MyIntIntMap(int initialCapacity, float loadFactorLimit) {
+        //set bounds for load factor between 0.1 and 0.9 (probing needs free slots)
+        this.loadFactorLimit = Math.min(Math.max(0.1f, loadFactorLimit), MAX_LOAD_FACTOR);
+        allocate(MyOpenAddressingTable.tableSizeFor(initialCapacity));
+    }
+    
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeThreshold = Math.min((int) (capacity * loadFactorLimit), capacity - 1);
+    }
+    
+    private int slotFor(int key) {
+        return MyOpenAddressingTable.spread(key) & mask;
+    }
+    
+    /**
+     * Returns: The index of the slot that holds the key, or -1 if the key is not in the map (or if it's the 0 key)
+     */
+    private int findSlot(int key) {
+        int slot = slotFor(key);
+        int current;
+        while ((current = keys[slot]) != EMPTY) {
+            if (current == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns: The index of the slot that holds the key,
+     * or if the key is not in the map the index of the empty slot where it should go, encoded as -(slot + 1)
+     */
+    private int findSlotOrInsertionPoint(int key) {
+        int slot = slotFor(key);
+        int current;
+        while ((current = keys[slot]) != EMPTY) {
+            if (current == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -(slot + 1);
+    }
+    
+    /**
+     * Adds a mapping with specified key and value into the map
+     * Returns: the old value (if specified key was already in the map)
+     * or the value added(if not)
+     */
+    public int put(int key, int value) {
+        if (key == EMPTY) {
+            int oldValue = hasZeroKey ? zeroKeyValue : value;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroKeyValue = value;
+            return oldValue;
+        }
+        
+        int slot = findSlotOrInsertionPoint(key);
+        if (slot >= 0) {
+            int oldValue = values[slot];
+            values[slot] = value;
+            return oldValue;
+        }
+        insertAt(-slot - 1, key, value);
+        return value;
+    }
+    
+    /**
+     * Adds the specified delta to the value of the key, a missing key counts as 0
+     * Returns: the new value
+     */
+    //This is the main reason this class exists, counting with a MyGenericHashMap<Integer, Integer>
+    // takes a get, a new boxed Integer and a put. Here it's a single probe and no allocation at all.
+    public int addTo(int key, int delta) {
+        if (key == EMPTY) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                zeroKeyValue = 0;
+                size++;
+            }
+            return zeroKeyValue += delta;
+        }
+        
+        int slot = findSlotOrInsertionPoint(key);
+        if (slot >= 0)
+            return values[slot] += delta;
+        insertAt(-slot - 1, key, delta);
+        return delta;
+    }
+    
+    /**
+     * Puts a new key into the empty slot found by findSlotOrInsertionPoint
+     */
+    private void insertAt(int slot, int key, int value) {
+        //counting the 0 key here doesn't matter much, it just makes the resize happen one mapping earlier
+        if (size >= resizeThreshold) {
+            if (keys.length == MAX_CAP)
+                throw new RuntimeException("Maximum capacity reached");
+            rehash();
+            slot = -findSlotOrInsertionPoint(key) - 1;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+    
+    /**
+     * Returns: The value that is connected to the provided key, or 0 if the key is not in this map
+     * (use containsKey() or getOrDefault() to tell a missing key apart from a key mapped to 0)
+     */
+    public int get(int key) {
+        return getOrDefault(key, 0);
+    }
+    
+    /**
+     * Returns: The value that is connected to the provided key, or defaultValue if the key is not in this map
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == EMPTY)
+            return hasZeroKey ? zeroKeyValue : defaultValue;
+        int slot = findSlot(key);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+    
+    /**
+     * Returns: true is provided key is in this map
+     */
+    public boolean containsKey(int key) {
+        if (key == EMPTY)
+            return hasZeroKey;
+        return findSlot(key) >= 0;
+    }
+    
+    /**
+     * Return: true if provided value is in this map
+     */
+    //Runtime complexity: O(n)
+    public boolean containsValue(int value) {
+        if (hasZeroKey && zeroKeyValue == value)
+            return true;
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != EMPTY && values[i] == value)
+                return true;
+        return false;
+    }
+    
+    /**
+     * Removes the mapping for the provided key
+     */
+    public void remove(int key) {
+        if (key == EMPTY) {
+            if (hasZeroKey) {
+                hasZeroKey = false;
+                size--;
+            }
+            return;
+        }
+        
+        int slot = findSlot(key);
+        if (slot < 0)
+            return;
+        
+        //backward shift deletion, see MyOpenAddressingTable.removeAt()
+        int emptySlot = slot;
+        int current = (slot + 1) & mask;
+        int currentKey;
+        while ((currentKey = keys[current]) != EMPTY) {
+            int home = slotFor(currentKey);
+            if (((current - home) & mask) >= ((current - emptySlot) & mask)) {
+                keys[emptySlot] = currentKey;
+                values[emptySlot] = values[current];
+                emptySlot = current;
+            }
+            current = (current + 1) & mask;
+        }
+        keys[emptySlot] = EMPTY;
+        size--;
+    }
+    
+    /**
+     * Removes all data from this map
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        hasZeroKey = false;
+        size = 0;
+    }
+    
+    /**
+     * Doubles the capacity and moves every key into the new arrays
+     */
+    private void rehash() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        
+        for (int i = 0; i < oldKeys.length; i++) {
+            int key = oldKeys[i];
+            if (key != EMPTY) {
+                int slot = slotFor(key);
+                while (keys[slot] != EMPTY)
+                    slot = (slot + 1) & mask;
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+    
+    /**
+     * Returns: A new array with all keys currently in this map
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int index = 0;
+        if (hasZeroKey)
+            result[index++] = EMPTY;
+        for (int key : keys)
+            if (key != EMPTY)
+                result[index++] = key;
+        return result;
+    }
+    
+    /**
+     * Returns: The count of mappings currently in this map
+     */
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        if (hasZeroKey)
+            sb.append("[0, ").append(zeroKeyValue).append("]");
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != EMPTY)
+                sb.append("[").append(keys[i]).append(", ").append(values[i]).append("]");
+        sb.append("]");
+        return sb.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,282 @@
+package mydatastructures;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A map from long keys to values of type V, a primitive-keyed version of MyGenericHashMap<Long, V>
+ * Keys are stored unboxed in a long array using open addressing (linear probing),
+ * so there is no Long object, entry object or list node allocated per mapping.
+ */
+//Same algorithm as MyIntIntMap (and MyOpenAddressingTable), only the key and value arrays have different types.
+public class MyLongObjectMap<V> {
+    
+    private static final int START_CAP_DEFAULT = 4;
+    private static final float LOAD_FACTOR_DEFAULT = 0.75f;
+    private static final float MAX_LOAD_FACTOR = 0.9f;
+    private static final int MAX_CAP = 1 << 30;
+    
+    //A long[] has no null, so one key value has to be reserved to mark an empty slot.
+    // 0 is used as that sentinel (new arrays are already filled with 0, no need to fill them)
+    // and the key 0 itself is stored outside of the arrays, in the two fields below.
+    private static final long EMPTY = 0L;
+    private boolean hasZeroKey = false;
+    private V zeroKeyValue;
+    
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size = 0;
+    private int resizeThreshold;
+    private final float loadFactorLimit;
+    
+    /**
+     * Default constructor
+     */
+    public MyLongObjectMap() {
+        this(START_CAP_DEFAULT, LOAD_FACTOR_DEFAULT);
+    }
+    
+    /**
+     * Constructs a map with default load factor and the desired initial capacity
+     */
+    public MyLongObjectMap(int initialCapacity) {
+        this(initialCapacity, LOAD_FACTOR_DEFAULT);
+    }
+    
+    /**
+     * Constructs a map with provided starting capacity and load factor
+     */
+    public MyLongObjectMap(int initialCapacity, float loadFactorLimit) {
+        //set bounds for load factor between 0.1 and 0.9 (probing needs free slots)
+        this.loadFactorLimit = Math.min(Math.max(0.1f, loadFactorLimit), MAX_LOAD_FACTOR);
+        allocate(MyOpenAddressingTable.tableSizeFor(initialCapacity));
+    }
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = Math.min((int) (capacity * loadFactorLimit), capacity - 1);
+    }
+    
+    private int slotFor(long key) {
+        //fold the upper half onto the lower half first (same as Long.hashCode()), so all 64 bits take part
+        return MyOpenAddressingTable.spread((int) (key ^ (key >>> 32))) & mask;
+    }
+    
+    /**
+     * Returns: The index of the slot that holds the key, or -1 if the key is not in the map (or if it's the 0 key)
+     */
+    private int findSlot(long key) {
+        int slot = slotFor(key);
+        long current;
+        while ((current = keys[slot]) != EMPTY) {
+            if (current == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns: The index of the slot that holds the key,
+     * or if the key is not in the map the index of the empty slot where it should go, encoded as -(slot + 1)
+     */
+    private int findSlotOrInsertionPoint(long key) {
+        int slot = slotFor(key);
+        long current;
+        while ((current = keys[slot]) != EMPTY) {
+            if (current == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -(slot + 1);
+    }
+    
+    /**
+     * Adds a mapping with specified key and value into the map
+     * Returns: the old value (if specified key was already in the map)
+     * or the value added(if not)
+     */
+    @SuppressWarnings("unchecked") // safe, values[] only ever receives elements of type V
+    public V put(long key, V value) {
+        if (key == EMPTY) {
+            V oldValue = hasZeroKey ? zeroKeyValue : value;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroKeyValue = value;
+            return oldValue;
+        }
+        
+        int slot = findSlotOrInsertionPoint(key);
+        if (slot >= 0) {
+            V oldValue = (V) values[slot];
+            values[slot] = value;
+            return oldValue;
+        }
+        insertAt(-slot - 1, key, value);
+        return value;
+    }
+    
+    /**
+     * Puts a new key into the empty slot found by findSlotOrInsertionPoint
+     */
+    private void insertAt(int slot, long key, V value) {
+        //counting the 0 key here doesn't matter much, it just makes the resize happen one mapping earlier
+        if (size >= resizeThreshold) {
+            if (keys.length == MAX_CAP)
+                throw new RuntimeException("Maximum capacity reached");
+            rehash();
+            slot = -findSlotOrInsertionPoint(key) - 1;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+    
+    /**
+     * Returns: The value that is connected to the provided key, or null if the key is not in this map
+     */
+    public V get(long key) {
+        return getOrDefault(key, null);
+    }
+    
+    /**
+     * Returns: The value that is connected to the provided key, or defaultValue if the key is not in this map
+     */
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(long key, V defaultValue) {
+        if (key == EMPTY)
+            return hasZeroKey ? zeroKeyValue : defaultValue;
+        int slot = findSlot(key);
+        return slot < 0 ? defaultValue : (V) values[slot];
+    }
+    
+    /**
+     * Returns: true is provided key is in this map
+     */
+    public boolean containsKey(long key) {
+        if (key == EMPTY)
+            return hasZeroKey;
+        return findSlot(key) >= 0;
+    }
+    
+    /**
+     * Return: true if provided value is in this map
+     */
+    //Runtime complexity: O(n)
+    public boolean containsValue(V value) {
+        if (hasZeroKey && Objects.equals(zeroKeyValue, value))
+            return true;
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != EMPTY && Objects.equals(values[i], value))
+                return true;
+        return false;
+    }
+    
+    /**
+     * Removes the mapping for the provided key
+     */
+    public void remove(long key) {
+        if (key == EMPTY) {
+            if (hasZeroKey) {
+                hasZeroKey = false;
+                zeroKeyValue = null;
+                size--;
+            }
+            return;
+        }
+        
+        int slot = findSlot(key);
+        if (slot < 0)
+            return;
+        
+        //backward shift deletion, see MyOpenAddressingTable.removeAt()
+        int emptySlot = slot;
+        int current = (slot + 1) & mask;
+        long currentKey;
+        while ((currentKey = keys[current]) != EMPTY) {
+            int home = slotFor(currentKey);
+            if (((current - home) & mask) >= ((current - emptySlot) & mask)) {
+                keys[emptySlot] = currentKey;
+                values[emptySlot] = values[current];
+                emptySlot = current;
+            }
+            current = (current + 1) & mask;
+        }
+        keys[emptySlot] = EMPTY;
+        values[emptySlot] = null; // let the value be garbage collected
+        size--;
+    }
+    
+    /**
+     * Removes all data from this map
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, null);
+        hasZeroKey = false;
+        zeroKeyValue = null;
+        size = 0;
+    }
+    
+    /**
+     * Doubles the capacity and moves every key into the new arrays
+     */
+    private void rehash() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != EMPTY) {
+                int slot = slotFor(key);
+                while (keys[slot] != EMPTY)
+                    slot = (slot + 1) & mask;
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+    
+    /**
+     * Returns: A new array with all keys currently in this map
+     */
+    public long[] keys() {
+        long[] result = new long[size];
+        int index = 0;
+        if (hasZeroKey)
+            result[index++] = EMPTY;
+        for (long key : keys)
+            if (key != EMPTY)
+                result[index++] = key;
+        return result;
+    }
+    
+    /**
+     * Returns: The count of mappings currently in this map
+     */
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        if (hasZeroKey)
+            sb.append("[0, ").append(zeroKeyValue).append("]");
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != EMPTY)
+                sb.append("[").append(keys[i]).append(", ").append(values[i]).append("]");
+        sb.append("]");
+        return sb.toString();
+    }
+}
\ No newline at end of file
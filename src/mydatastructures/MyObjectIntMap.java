@@ -0,0 +1,258 @@
+package mydatastructures;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A map from keys of type K to int values, a primitive-valued version of MyGenericHashMap<K, Integer>
+ * Values are stored unboxed in an int array using open addressing (linear probing),
+ * so counting with addTo() never allocates an Integer, entry object or list node.
+ */
+//Same algorithm as MyIntIntMap (and MyOpenAddressingTable), only the key and value arrays have different types.
+//null marks an empty slot in the keys array, so null keys are not supported.
+public class MyObjectIntMap<K> {
+    
+    private static final int START_CAP_DEFAULT = 4;
+    private static final float LOAD_FACTOR_DEFAULT = 0.75f;
+    private static final float MAX_LOAD_FACTOR = 0.9f;
+    private static final int MAX_CAP = 1 << 30;
+    
+    private Object[] keys;
+    private int[] values;
+    private int mask;
+    private int size = 0;
+    private int resizeThreshold;
+    private final float loadFactorLimit;
+    
+    /**
+     * Default constructor
+     */
+    public MyObjectIntMap() {
+        this(START_CAP_DEFAULT, LOAD_FACTOR_DEFAULT);
+    }
+    
+    /**
+     * Constructs a map with default load factor and the desired initial capacity
+     */
+    public MyObjectIntMap(int initialCapacity) {
+        this(initialCapacity, LOAD_FACTOR_DEFAULT);
+    }
+    
+    /**
+     * Constructs a map with provided starting capacity and load factor
+     */
+    public MyObjectIntMap(int initialCapacity, float loadFactorLimit) {
+        //set bounds for load factor between 0.1 and 0.9 (probing needs free slots)
+        this.loadFactorLimit = Math.min(Math.max(0.1f, loadFactorLimit), MAX_LOAD_FACTOR);
+        allocate(MyOpenAddressingTable.tableSizeFor(initialCapacity));
+    }
+    
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeThreshold = Math.min((int) (capacity * loadFactorLimit), capacity - 1);
+    }
+    
+    private int slotFor(Object key) {
+        return MyOpenAddressingTable.spread(key.hashCode()) & mask;
+    }
+    
+    /**
+     * Returns: The index of the slot that holds the key, or -1 if the key is not in the map
+     */
+    private int findSlot(Object key) {
+        Objects.requireNonNull(key, "null keys are not supported");
+        int slot = slotFor(key);
+        Object current;
+        while ((current = keys[slot]) != null) {
+            if (current == key || current.equals(key))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns: The index of the slot that holds the key,
+     * or if the key is not in the map the index of the empty slot where it should go, encoded as -(slot + 1)
+     */
+    private int findSlotOrInsertionPoint(Object key) {
+        Objects.requireNonNull(key, "null keys are not supported");
+        int slot = slotFor(key);
+        Object current;
+        while ((current = keys[slot]) != null) {
+            if (current == key || current.equals(key))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -(slot + 1);
+    }
+    
+    /**
+     * Adds a mapping with specified key and value into the map
+     * Returns: the old value (if specified key was already in the map)
+     * or the value added(if not)
+     */
+    public int put(K key, int value) {
+        int slot = findSlotOrInsertionPoint(key);
+        if (slot >= 0) {
+            int oldValue = values[slot];
+            values[slot] = value;
+            return oldValue;
+        }
+        insertAt(-slot - 1, key, value);
+        return value;
+    }
+    
+    /**
+     * Adds the specified delta to the value of the key, a missing key counts as 0
+     * Returns: the new value
+     */
+    //This is the main reason this class exists, counting with a MyGenericHashMap<K, Integer>
+    // takes a get, a new boxed Integer and a put. Here it's a single probe and no allocation at all.
+    public int addTo(K key, int delta) {
+        int slot = findSlotOrInsertionPoint(key);
+        if (slot >= 0)
+            return values[slot] += delta;
+        insertAt(-slot - 1, key, delta);
+        return delta;
+    }
+    
+    /**
+     * Puts a new key into the empty slot found by findSlotOrInsertionPoint
+     */
+    private void insertAt(int slot, K key, int value) {
+        if (size >= resizeThreshold) {
+            if (keys.length == MAX_CAP)
+                throw new RuntimeException("Maximum capacity reached");
+            rehash();
+            slot = -findSlotOrInsertionPoint(key) - 1;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+    
+    /**
+     * Returns: The value that is connected to the provided key, or 0 if the key is not in this map
+     * (use containsKey() or getOrDefault() to tell a missing key apart from a key mapped to 0)
+     */
+    public int get(K key) {
+        return getOrDefault(key, 0);
+    }
+    
+    /**
+     * Returns: The value that is connected to the provided key, or defaultValue if the key is not in this map
+     */
+    public int getOrDefault(K key, int defaultValue) {
+        int slot = findSlot(key);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+    
+    /**
+     * Returns: true is provided key is in this map
+     */
+    public boolean containsKey(K key) {
+        return findSlot(key) >= 0;
+    }
+    
+    /**
+     * Return: true if provided value is in this map
+     */
+    //Runtime complexity: O(n)
+    public boolean containsValue(int value) {
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != null && values[i] == value)
+                return true;
+        return false;
+    }
+    
+    /**
+     * Removes the mapping for the provided key
+     */
+    public void remove(K key) {
+        int slot = findSlot(key);
+        if (slot < 0)
+            return;
+        
+        //backward shift deletion, see MyOpenAddressingTable.removeAt()
+        int emptySlot = slot;
+        int current = (slot + 1) & mask;
+        Object currentKey;
+        while ((currentKey = keys[current]) != null) {
+            int home = slotFor(currentKey);
+            if (((current - home) & mask) >= ((current - emptySlot) & mask)) {
+                keys[emptySlot] = currentKey;
+                values[emptySlot] = values[current];
+                emptySlot = current;
+            }
+            current = (current + 1) & mask;
+        }
+        keys[emptySlot] = null;
+        size--;
+    }
+    
+    /**
+     * Removes all data from this map
+     */
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+    
+    /**
+     * Doubles the capacity and moves every key into the new arrays
+     */
+    private void rehash() {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        
+        for (int i = 0; i < oldKeys.length; i++) {
+            Object key = oldKeys[i];
+            if (key != null) {
+                int slot = slotFor(key);
+                while (keys[slot] != null)
+                    slot = (slot + 1) & mask;
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+    
+    /**
+     * Returns: A set of all keys currently in this map
+     */
+    @SuppressWarnings("unchecked") // safe, keys[] only ever receives elements of type K
+    public Set<K> keySet() {
+        Set<K> set = new HashSet<>();
+        for (Object key : keys)
+            if (key != null)
+                set.add((K) key);
+        return set;
+    }
+    
+    /**
+     * Returns: The count of mappings currently in this map
+     */
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != null)
+                sb.append("[").append(keys[i]).append(", ").append(values[i]).append("]");
+        sb.append("]");
+        return sb.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,427 @@
+package mydatastructures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Storage engine used by MyGenericHashMap when it is created in open addressing mode.
+ * Instead of keeping a linked list in each bucket, keys and values live directly in two flat arrays
+ * and a key collision is resolved by moving on to the next slot (linear probing).
+ */
+//This class is package-private on purpose, the client only ever talks to MyGenericHashMap
+// which forwards its calls here when open addressing is switched on.
+class MyOpenAddressingTable<K, V> {
+    
+    private static final int MIN_CAP = 2;
+    private static final int MAX_CAP = 1 << 30;
+    //linear probing needs at least one empty slot to terminate a search
+    // and slows down drastically when the table is almost full, so the load factor is capped lower than with chaining
+    private static final float MAX_LOAD_FACTOR = 0.9f;
+    
+    // keys[i] == null marks an empty slot, which is why null keys are not supported in this mode
+    // values[i] belongs to keys[i], keeping them in separate arrays avoids an entry object per mapping
+    private Object[] keys;
+    private Object[] values;
+    
+    //capacity is always a power of two, so (capacity - 1) can be used as a bit mask instead of the % operator
+    private int mask;
+    private int size = 0;
+    private int resizeThreshold;
+    private final float loadFactorLimit;
+    
+    //set by MyGenericHashMap when statistics are enabled (null otherwise)
+    MyHashStatistics.Counters counters;
+    
+    /**
+     * Constructs a table with at least the provided capacity (rounded up to a power of two)
+     */
+    MyOpenAddressingTable(int initialCapacity, float loadFactorLimit) {
+        this.loadFactorLimit = Math.min(loadFactorLimit, MAX_LOAD_FACTOR);
+        allocate(tableSizeFor(initialCapacity));
+    }
+    
+    /**
+     * Returns: The smallest power of two that is >= requested capacity
+     */
+    static int tableSizeFor(int requestedCapacity) {
+        if (requestedCapacity >= MAX_CAP)
+            return MAX_CAP;
+        if (requestedCapacity <= MIN_CAP)
+            return MIN_CAP;
+        return Integer.highestOneBit(requestedCapacity - 1) << 1;
+    }
+    
+    /**
+     * Hash spreading function
+     */
+    //Only the lowest bits of the hash are used to pick a slot (hash & mask), so hashCodes that differ only
+    // in their higher bits (think of Float or small Long keys) would all collide.
+    // Multiplying by the golden ratio constant mixes every input bit into the higher bits,
+    // and folding the upper half onto the lower half brings them back to where the mask can see them.
+    static int spread(int hashCode) {
+        int h = hashCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        //make sure at least one slot always stays empty
+        resizeThreshold = Math.min((int) (capacity * loadFactorLimit), capacity - 1);
+    }
+    
+    /**
+     * Returns: The index of the slot that holds the key, or -1 if the key is not in the table
+     */
+    //Runtime complexity: O(1) on average, probing walks over consecutive array slots
+    // which is what makes it cache friendly compared to following linked list nodes
+    private int findSlot(Object key) {
+        Objects.requireNonNull(key, "Open addressing mode does not support null keys");
+        int slot = spread(key.hashCode()) & mask;
+        Object current;
+        //the loop is guaranteed to end because the table is never allowed to fill up completely
+        while ((current = keys[slot]) != null) {
+            if (current == key || current.equals(key))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    @SuppressWarnings("unchecked") // safe, values[] only ever receives elements of type V through put()
+    V get(K key) {
+        int slot = findSlot(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+    
+    boolean containsKey(K key) {
+        return findSlot(key) >= 0;
+    }
+    
+    /**
+     * Adds the key and value into the table
+     * Returns: the old value (if the key was already in the table) or the value added (if not)
+     */
+    //same return contract as MyGenericHashMap.put()
+    V put(K key, V value) {
+        int slot = locate(key);
+        if (slot >= 0)
+            return setValueAt(slot, value);
+        insertAt(-slot - 1, key, value);
+        return value;
+    }
+    
+    /**
+     * Returns: The index of the slot that holds the key,
+     * or if the key is not in the table the index of the empty slot where it should go, encoded as -(slot + 1)
+     */
+    int locate(Object key) {
+        Objects.requireNonNull(key, "Open addressing mode does not support null keys");
+        int slot = spread(key.hashCode()) & mask;
+        Object current;
+        while ((current = keys[slot]) != null) {
+            if (current == key || current.equals(key))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -(slot + 1);
+    }
+    
+    /**
+     * Replaces the value in the specified slot
+     * Returns: the old value
+     */
+    @SuppressWarnings("unchecked")
+    V setValueAt(int slot, V value) {
+        V oldValue = (V) values[slot];
+        values[slot] = value;
+        return oldValue;
+    }
+    
+    /**
+     * Adds a new key into the empty slot found by locate()
+     */
+    void insertAt(int slot, K key, V value) {
+        if (size >= resizeThreshold) {
+            if (keys.length == MAX_CAP)
+                throw new RuntimeException("Maximum capacity reached");
+            rehash();
+            //the table has a new layout, so the free slot found above is no longer valid
+            slot = spread(key.hashCode()) & mask;
+            while (keys[slot] != null)
+                slot = (slot + 1) & mask;
+        }
+        
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+    
+    /**
+     * Removes the mapping for the provided key
+     */
+    void remove(K key) {
+        int slot = findSlot(key);
+        if (slot >= 0)
+            removeAt(slot, null);
+    }
+    
+    /**
+     * Removes the mapping in the specified slot (found by locate())
+     */
+    void removeSlot(int slot) {
+        removeAt(slot, null);
+    }
+    
+    /**
+     * Removes the mapping stored in the specified slot
+     */
+    //Simply setting the slot to null would break the probe chain of every key that was pushed past this slot,
+    // they would become unreachable. Instead of leaving a "deleted" marker (tombstone) behind,
+    // the following keys of the chain are shifted back so the table stays exactly as if the key was never inserted.
+    //If cursor is not null, the removal is done by that cursor while it is on the specified slot (see Cursor)
+    private void removeAt(int slot, Cursor cursor) {
+        int emptySlot = slot;
+        int current = (slot + 1) & mask;
+        Object key;
+        while ((key = keys[current]) != null) {
+            int home = spread(key.hashCode()) & mask;
+            // a key can only be moved back into emptySlot if that doesn't put it before its home slot,
+            // (the distances are calculated with the mask so the wrap around the end of the array is handled)
+            if (((current - home) & mask) >= ((current - emptySlot) & mask)) {
+                keys[emptySlot] = key;
+                values[emptySlot] = values[current];
+                if (cursor != null && current < slot && emptySlot >= slot)
+                    cursor.addWrappedKey(key);
+                emptySlot = current;
+            }
+            current = (current + 1) & mask;
+        }
+        keys[emptySlot] = null;
+        values[emptySlot] = null;
+        size--;
+    }
+    
+    void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+    
+    //Runtime complexity: O(n)
+    boolean containsValue(V value) {
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != null && Objects.equals(values[i], value))
+                return true;
+        return false;
+    }
+    
+    /**
+     * Doubles the capacity and moves every key into its slot in the new, larger arrays
+     */
+    //Runtime complexity: O(n), but unlike the chaining rehash it does not allocate anything besides the new arrays
+    // and it doesn't go back through put(), the new arrays can't contain duplicates so no equals() calls are needed
+    private void rehash() {
+        rehash(keys.length << 1);
+    }
+    
+    /**
+     * Makes sure the table can hold the specified number of mappings without resizing again
+     */
+    void ensureCapacity(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / (double) loadFactorLimit) + 1;
+        int capacity = tableSizeFor((int) Math.min(needed, MAX_CAP));
+        if (capacity > keys.length)
+            rehash(capacity);
+    }
+    
+    private void rehash(int newCapacity) {
+        long start = counters != null ? System.nanoTime() : 0;
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(newCapacity);
+        
+        for (int i = 0; i < oldKeys.length; i++) {
+            Object key = oldKeys[i];
+            if (key != null) {
+                int slot = spread(key.hashCode()) & mask;
+                while (keys[slot] != null)
+                    slot = (slot + 1) & mask;
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+        
+        if (counters != null) {
+            counters.rehashes++;
+            counters.rehashNanos += System.nanoTime() - start;
+        }
+    }
+    
+    /**
+     * Returns: The probe length distribution, element i is the number of keys that are found after probing exactly i slots
+     */
+    long[] probeLengthHistogram() {
+        long[] histogram = new long[2];
+        for (int slot = 0; slot < keys.length; slot++) {
+            Object key = keys[slot];
+            if (key == null)
+                continue;
+            //distance from the slot the key hashes to, the probe sequence can wrap around the end of the array
+            int probes = ((slot - (spread(key.hashCode()) & mask)) & mask) + 1;
+            if (probes >= histogram.length)
+                histogram = Arrays.copyOf(histogram, Math.max(probes + 1, histogram.length << 1));
+            histogram[probes]++;
+        }
+        return histogram;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Returns: Number of slots in the table, used together with keyAt()/valueAt() to go through all mappings
+     */
+    int capacity() {
+        return keys.length;
+    }
+    
+    /**
+     * Returns: The key stored in the specified slot, or null if the slot is empty
+     */
+    @SuppressWarnings("unchecked")
+    K keyAt(int slot) {
+        return (K) keys[slot];
+    }
+    
+    @SuppressWarnings("unchecked")
+    V valueAt(int slot) {
+        return (V) values[slot];
+    }
+    
+    /**
+     * Goes through the mappings of the table one by one, and allows removing them along the way
+     */
+    //Slots are visited from the last one down to 0. Removing the mapping in the current slot shifts the keys
+    // that follow it back by one or more slots, and those are the higher slots which were already visited,
+    // so nothing gets visited twice and nothing gets skipped...
+    //...except when the chain of keys continues past the end of the array, from slot 0 on.
+    // Such a key (not visited yet) can be shifted into the part of the table that was already visited,
+    // those keys are collected in a list and visited after slot 0.
+    //The list is only allocated if that actually happens, so a normal scan doesn't allocate anything.
+    class Cursor {
+        private int slot;
+        private int nextSlot;
+        private boolean nextSlotKnown;
+        private ArrayList<Object> wrappedKeys;
+        private int wrappedIndex;
+        // true if the cursor is on a mapping (and not before the first one, after the last one or on a removed one)
+        private boolean onMapping;
+        
+        Cursor() {
+            reset();
+        }
+        
+        /**
+         * Moves the cursor back before the first mapping
+         */
+        void reset() {
+            slot = keys.length;
+            nextSlotKnown = false;
+            if (wrappedKeys != null)
+                wrappedKeys.clear();
+            wrappedIndex = -1;
+            onMapping = false;
+        }
+        
+        /**
+         * Returns: true if there is another mapping after the current one
+         */
+        boolean hasNext() {
+            if (!nextSlotKnown) {
+                nextSlot = slot - 1;
+                while (nextSlot >= 0 && keys[nextSlot] == null)
+                    nextSlot--;
+                nextSlotKnown = true;
+            }
+            return nextSlot >= 0 || (wrappedKeys != null && wrappedIndex + 1 < wrappedKeys.size());
+        }
+        
+        /**
+         * Moves the cursor to the next mapping
+         * Returns: false if there are no more mappings
+         */
+        boolean advance() {
+            if (!hasNext()) {
+                onMapping = false;
+                return false;
+            }
+            if (nextSlot >= 0)
+                slot = nextSlot;
+            else {
+                slot = -1; // all slots are done, the rest are the wrapped keys
+                wrappedIndex++;
+            }
+            nextSlotKnown = false;
+            onMapping = true;
+            return true;
+        }
+        
+        @SuppressWarnings("unchecked")
+        K key() {
+            checkOnMapping();
+            return (K) (slot >= 0 ? keys[slot] : wrappedKeys.get(wrappedIndex));
+        }
+        
+        @SuppressWarnings("unchecked")
+        V value() {
+            checkOnMapping();
+            return (V) values[currentSlot()];
+        }
+        
+        /**
+         * Replaces the value of the current mapping
+         * Returns: the old value
+         */
+        @SuppressWarnings("unchecked")
+        V setValue(V value) {
+            checkOnMapping();
+            int current = currentSlot();
+            V oldValue = (V) values[current];
+            values[current] = value;
+            return oldValue;
+        }
+        
+        /**
+         * Removes the current mapping from the table
+         */
+        void remove() {
+            checkOnMapping();
+            if (slot >= 0)
+                removeAt(slot, this);
+            else
+                //every slot was visited already, shifting keys around can't cause any trouble now
+                removeAt(findSlot(wrappedKeys.get(wrappedIndex)), null);
+            nextSlotKnown = false;
+            onMapping = false;
+        }
+        
+        private void addWrappedKey(Object key) {
+            if (wrappedKeys == null)
+                wrappedKeys = new ArrayList<>();
+            wrappedKeys.add(key);
+        }
+        
+        private int currentSlot() {
+            return slot >= 0 ? slot : findSlot(wrappedKeys.get(wrappedIndex));
+        }
+        
+        private void checkOnMapping() {
+            if (!onMapping)
+                throw new IllegalStateException("The cursor is not on a mapping");
+        }
+    }
+}
\ No newline at end of file
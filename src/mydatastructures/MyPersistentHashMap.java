@@ -0,0 +1,416 @@
+package mydatastructures;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * A hash map that keeps its whole table in a memory mapped file instead of on the Java heap.
+ * Opening an existing file doesn't read or rebuild anything, the operating system loads the parts of the file
+ * that are actually used, so a map of any size is ready in milliseconds and it can be larger than the heap.
+ * Keys and values are turned into bytes by the provided codecs, null keys and values are not supported.
+ */
+//The table works the same way as MyOpenAddressingTable (linear probing, backward shift deletion),
+// except that every slot is a fixed number of bytes in the file instead of two array elements:
+//  [hash of the key (4 bytes)][key (keyCodec.width() bytes)][value (valueCodec.width() bytes)]
+// A hash of 0 marks an empty slot, so a new file (filled with zeros) is an empty table.
+//Keys are hashed and compared in their encoded form, so looking a key up doesn't decode anything from the file
+// and the key class doesn't even need equals()/hashCode(), two keys are equal if their bytes are equal.
+//This class is not thread safe, and changes reach the disk when the operating system decides so (or on force()/close())
+public class MyPersistentHashMap<K, V> implements Closeable {
+    
+    private static final int START_CAP_DEFAULT = 16;
+    private static final float LOAD_FACTOR_DEFAULT = 0.75f;
+    private static final float MAX_LOAD_FACTOR = 0.9f;
+    private static final int MAX_CAP = 1 << 30;
+    
+    // The file starts with a header that describes the table, the slots follow right after it
+    private static final int MAGIC = 0x4D59504D; // "MYPM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_POSITION = 0;
+    private static final int VERSION_POSITION = 4;
+    private static final int KEY_WIDTH_POSITION = 8;
+    private static final int VALUE_WIDTH_POSITION = 12;
+    private static final int CAPACITY_POSITION = 16;
+    private static final int SIZE_POSITION = 20;
+    private static final int LOAD_FACTOR_POSITION = 24;
+    
+    // a single MappedByteBuffer can't be larger than 2GB, so the slots are mapped in chunks of at most this many bytes
+    private static final long CHUNK_BYTES = 1 << 30;
+    
+    private final Path file;
+    private final MyCodec<K> keyCodec;
+    private final MyCodec<V> valueCodec;
+    private final int keyWidth;
+    private final int slotWidth;
+    private final float loadFactorLimit;
+    
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] chunks;
+    // the number of slots in a chunk is a power of two, so the chunk of a slot is just (slot >>> chunkShift)
+    private int chunkShift;
+    private int chunkMask;
+    
+    private int capacity;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    
+    //the key currently being looked up, in its encoded form
+    // (reused by every operation, that's one of the reasons this class is not thread safe)
+    private final ByteBuffer keyBuffer;
+    
+    /**
+     * Opens the map stored in the provided file, or creates a new empty map in it if the file doesn't exist
+     */
+    public MyPersistentHashMap(Path file, MyCodec<K> keyCodec, MyCodec<V> valueCodec) throws IOException {
+        this(file, keyCodec, valueCodec, START_CAP_DEFAULT, LOAD_FACTOR_DEFAULT);
+    }
+    
+    /**
+     * Opens the map stored in the provided file, or creates a new empty map in it if the file doesn't exist
+     * The capacity and load factor are only used for a new map, an existing map keeps the ones it was created with.
+     * Throws: IllegalArgumentException if the existing map was created with codecs of a different width
+     */
+    public MyPersistentHashMap(Path file, MyCodec<K> keyCodec, MyCodec<V> valueCodec,
+                               int initialCapacity, float loadFactorLimit) throws IOException {
+        this.file = file;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.keyWidth = keyCodec.width();
+        this.slotWidth = Integer.BYTES + keyWidth + valueCodec.width();
+        this.keyBuffer = ByteBuffer.allocate(keyWidth);
+        
+        boolean exists = Files.exists(file) && Files.size(file) > 0;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        
+        if (exists) {
+            if (header.getInt(MAGIC_POSITION) != MAGIC || header.getInt(VERSION_POSITION) != VERSION) {
+                channel.close();
+                throw new IOException("Not a MyPersistentHashMap file: " + file);
+            }
+            if (header.getInt(KEY_WIDTH_POSITION) != keyWidth || header.getInt(VALUE_WIDTH_POSITION) != valueCodec.width()) {
+                channel.close();
+                throw new IllegalArgumentException("The map in " + file + " was created with different codecs");
+            }
+            this.loadFactorLimit = header.getFloat(LOAD_FACTOR_POSITION);
+            setCapacity(header.getInt(CAPACITY_POSITION));
+            size = header.getInt(SIZE_POSITION);
+        } else {
+            //set bounds for load factor between 0.1 and 0.9 (probing needs free slots)
+            this.loadFactorLimit = Math.min(Math.max(0.1f, loadFactorLimit), MAX_LOAD_FACTOR);
+            setCapacity(MyOpenAddressingTable.tableSizeFor(initialCapacity));
+            size = 0;
+            writeHeader(header, capacity, 0);
+        }
+        chunks = mapSlots(channel, capacity);
+    }
+    
+    private void setCapacity(int capacity) {
+        this.capacity = capacity;
+        mask = capacity - 1;
+        resizeThreshold = Math.min((int) (capacity * loadFactorLimit), capacity - 1);
+        int slotsPerChunk = Math.min(capacity, Integer.highestOneBit((int) (CHUNK_BYTES / slotWidth)));
+        chunkShift = Integer.numberOfTrailingZeros(slotsPerChunk);
+        chunkMask = slotsPerChunk - 1;
+    }
+    
+    private void writeHeader(ByteBuffer header, int capacity, int size) {
+        header.putInt(MAGIC_POSITION, MAGIC);
+        header.putInt(VERSION_POSITION, VERSION);
+        header.putInt(KEY_WIDTH_POSITION, keyWidth);
+        header.putInt(VALUE_WIDTH_POSITION, valueCodec.width());
+        header.putInt(CAPACITY_POSITION, capacity);
+        header.putInt(SIZE_POSITION, size);
+        header.putFloat(LOAD_FACTOR_POSITION, loadFactorLimit);
+    }
+    
+    /**
+     * Maps the slots of a table with the specified capacity (chunkShift has to be set for that capacity already)
+     * The file grows as needed, the new part of the file is filled with zeros, which means empty slots
+     */
+    private MappedByteBuffer[] mapSlots(FileChannel fileChannel, int capacity) throws IOException {
+        int slotsPerChunk = chunkMask + 1;
+        MappedByteBuffer[] mapped = new MappedByteBuffer[(capacity + slotsPerChunk - 1) / slotsPerChunk];
+        long chunkBytes = (long) slotsPerChunk * slotWidth;
+        for (int i = 0; i < mapped.length; i++)
+            mapped[i] = fileChannel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * chunkBytes, chunkBytes);
+        return mapped;
+    }
+    
+    private ByteBuffer chunkOf(int slot) {
+        return chunks[slot >>> chunkShift];
+    }
+    
+    /**
+     * Returns: The position of the slot in its chunk
+     */
+    private int positionOf(int slot) {
+        return (slot & chunkMask) * slotWidth;
+    }
+    
+    /**
+     * Encodes the key into keyBuffer
+     * Returns: the hash of the encoded key (never 0, 0 marks an empty slot)
+     */
+    private int encodeKey(K key) {
+        ensureOpen();
+        Objects.requireNonNull(key, "MyPersistentHashMap does not support null keys");
+        keyCodec.write(keyBuffer, 0, key);
+        int hashCode = 1;
+        for (int i = 0; i < keyWidth; i++)
+            hashCode = 31 * hashCode + keyBuffer.get(i);
+        int hash = MyOpenAddressingTable.spread(hashCode);
+        return hash == 0 ? 1 : hash;
+    }
+    
+    /**
+     * Returns: The slot that holds the key currently in keyBuffer,
+     * or if the key is not in the map the empty slot where it should go, encoded as -(slot + 1)
+     */
+    private int findSlot(int hash) {
+        int slot = hash & mask;
+        int storedHash;
+        while ((storedHash = chunkOf(slot).getInt(positionOf(slot))) != 0) {
+            if (storedHash == hash && keyEquals(slot))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -(slot + 1);
+    }
+    
+    /**
+     * Returns: true if the slot holds the same bytes as keyBuffer
+     */
+    private boolean keyEquals(int slot) {
+        ByteBuffer chunk = chunkOf(slot);
+        int position = positionOf(slot) + Integer.BYTES;
+        int i = 0;
+        //8 bytes at a time while possible
+        for (; i + Long.BYTES <= keyWidth; i += Long.BYTES)
+            if (chunk.getLong(position + i) != keyBuffer.getLong(i))
+                return false;
+        for (; i < keyWidth; i++)
+            if (chunk.get(position + i) != keyBuffer.get(i))
+                return false;
+        return true;
+    }
+    
+    /**
+     * Returns: The value that is connected to the provided key, or null if the key is not in this map
+     */
+    public V get(K key) {
+        int slot = findSlot(encodeKey(key));
+        if (slot < 0)
+            return null;
+        return valueCodec.read(chunkOf(slot), positionOf(slot) + Integer.BYTES + keyWidth);
+    }
+    
+    /**
+     * Returns: true is provided key is in this map
+     */
+    public boolean containsKey(K key) {
+        return findSlot(encodeKey(key)) >= 0;
+    }
+    
+    /**
+     * Adds a mapping with specified key and value into the map
+     * Returns: the old value (if specified key was already in the map)
+     * or the value added(if not)
+     */
+    public V put(K key, V value) {
+        Objects.requireNonNull(value, "MyPersistentHashMap does not support null values");
+        int hash = encodeKey(key);
+        int slot = findSlot(hash);
+        if (slot >= 0) {
+            int valuePosition = positionOf(slot) + Integer.BYTES + keyWidth;
+            V oldValue = valueCodec.read(chunkOf(slot), valuePosition);
+            valueCodec.write(chunkOf(slot), valuePosition, value);
+            return oldValue;
+        }
+        
+        if (size >= resizeThreshold) {
+            if (capacity == MAX_CAP)
+                throw new RuntimeException("Maximum capacity reached");
+            try {
+                rehash();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            //the key is still in keyBuffer, only its slot has to be found again
+            slot = findSlot(hash);
+        }
+        
+        slot = -slot - 1;
+        ByteBuffer chunk = chunkOf(slot);
+        int position = positionOf(slot);
+        for (int i = 0; i < keyWidth; i++)
+            chunk.put(position + Integer.BYTES + i, keyBuffer.get(i));
+        valueCodec.write(chunk, position + Integer.BYTES + keyWidth, value);
+        //the hash is written last, it's what makes the slot count as used
+        chunk.putInt(position, hash);
+        header.putInt(SIZE_POSITION, ++size);
+        return value;
+    }
+    
+    /**
+     * Removes the mapping for the provided key
+     */
+    public void remove(K key) {
+        int slot = findSlot(encodeKey(key));
+        if (slot < 0)
+            return;
+        
+        //backward shift deletion, see MyOpenAddressingTable.removeAt()
+        int emptySlot = slot;
+        int current = (slot + 1) & mask;
+        int hash;
+        while ((hash = chunkOf(current).getInt(positionOf(current))) != 0) {
+            int home = hash & mask;
+            if (((current - home) & mask) >= ((current - emptySlot) & mask)) {
+                copySlot(chunkOf(current), positionOf(current), chunkOf(emptySlot), positionOf(emptySlot));
+                emptySlot = current;
+            }
+            current = (current + 1) & mask;
+        }
+        chunkOf(emptySlot).putInt(positionOf(emptySlot), 0);
+        header.putInt(SIZE_POSITION, --size);
+    }
+    
+    private void copySlot(ByteBuffer from, int fromPosition, ByteBuffer to, int toPosition) {
+        int i = 0;
+        for (; i + Long.BYTES <= slotWidth; i += Long.BYTES)
+            to.putLong(toPosition + i, from.getLong(fromPosition + i));
+        for (; i < slotWidth; i++)
+            to.put(toPosition + i, from.get(fromPosition + i));
+    }
+    
+    /**
+     * Removes all data from this map
+     */
+    //Runtime complexity: O(capacity), every slot is marked as empty (the file doesn't shrink)
+    public void clear() {
+        ensureOpen();
+        for (int slot = 0; slot < capacity; slot++)
+            chunkOf(slot).putInt(positionOf(slot), 0);
+        size = 0;
+        header.putInt(SIZE_POSITION, 0);
+    }
+    
+    /**
+     * Doubles the capacity of the table
+     */
+    //The larger table is built in a separate file, which then replaces the current file in a single move
+    // so the file on disk always holds a complete table, either the old one or the new one.
+    //The stored hashes are enough to find the new slots, so the slots are copied as raw bytes without decoding them
+    private void rehash() throws IOException {
+        Path resizeFile = file.resolveSibling(file.getFileName() + ".resize");
+        int newCapacity = capacity << 1;
+        int oldCapacity = capacity;
+        MappedByteBuffer[] oldChunks = chunks;
+        int oldChunkShift = chunkShift;
+        int oldChunkMask = chunkMask;
+        
+        setCapacity(newCapacity);
+        try (FileChannel resizeChannel = FileChannel.open(resizeFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            chunks = mapSlots(resizeChannel, newCapacity);
+            for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+                ByteBuffer oldChunk = oldChunks[oldSlot >>> oldChunkShift];
+                int oldPosition = (oldSlot & oldChunkMask) * slotWidth;
+                int hash = oldChunk.getInt(oldPosition);
+                if (hash == 0)
+                    continue;
+                int slot = hash & mask;
+                while (chunkOf(slot).getInt(positionOf(slot)) != 0)
+                    slot = (slot + 1) & mask;
+                copySlot(oldChunk, oldPosition, chunkOf(slot), positionOf(slot));
+            }
+            MappedByteBuffer newHeader = resizeChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            writeHeader(newHeader, newCapacity, size);
+            newHeader.force();
+            for (MappedByteBuffer chunk : chunks)
+                chunk.force();
+        }
+        
+        channel.close();
+        Files.move(resizeFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        chunks = mapSlots(channel, newCapacity);
+    }
+    
+    /**
+     * Calls the action for every mapping in this map
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        ensureOpen();
+        for (int slot = 0; slot < capacity; slot++) {
+            ByteBuffer chunk = chunkOf(slot);
+            int position = positionOf(slot);
+            if (chunk.getInt(position) != 0)
+                action.accept(keyCodec.read(chunk, position + Integer.BYTES),
+                        valueCodec.read(chunk, position + Integer.BYTES + keyWidth));
+        }
+    }
+    
+    /**
+     * Returns: The count of mappings currently in this map
+     */
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Makes sure every change made so far is written to the disk
+     */
+    public void force() {
+        ensureOpen();
+        header.force();
+        for (MappedByteBuffer chunk : chunks)
+            chunk.force();
+    }
+    
+    /**
+     * Writes every change to the disk and closes the file, the map can't be used after this
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null)
+            return;
+        force();
+        channel.close();
+        channel = null;
+        header = null;
+        chunks = null;
+    }
+    
+    private void ensureOpen() {
+        if (channel == null)
+            throw new IllegalStateException("The map is closed");
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        forEach((key, value) -> sb.append("[").append(key).append(", ").append(value).append("]"));
+        sb.append("]");
+        return sb.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,422 @@
+package mydatastructures;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable list, every "change" returns a new version and leaves the old one as it was (a persistent vector).
+ * The versions share almost all of their memory: the elements are kept in a tree where every node has 32 children,
+ * so a change only copies the nodes on the path to one element (about log32(n) nodes, 4 of them for a million elements).
+ * The last (up to) 32 elements are kept outside of the tree in a "tail" array, so append() usually copies only that.
+ * Because a version never changes, it can be handed to any number of reader threads without copying or locking.
+ * For building a large vector (or making many changes in a row) there is a Builder, which changes its own nodes in place,
+ * and can hand out a persistent snapshot of its current content at any time in O(1).
+ */
+//Same layout as the vectors of Clojure and Scala. Element i is found by taking 5 bits of i for every level of the tree,
+// starting from the top: the child at level 'shift' is (i >>> shift) & 31, the leaf holds element i at i & 31
+public final class MyPersistentVector<E> implements Iterable<E> {
+    
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    
+    //A node of the tree, 'array' holds the child nodes (or the elements, for the leaves).
+    // 'owner' is the Builder token that is allowed to change the node in place, nodes of a persistent vector are never changed
+    private static final class Node {
+        final Object owner;
+        final Object[] array;
+        
+        Node(Object owner, Object[] array) {
+            this.owner = owner;
+            this.array = array;
+        }
+    }
+    
+    private static final Node EMPTY_NODE = new Node(null, new Object[WIDTH]);
+    private static final MyPersistentVector<?> EMPTY = new MyPersistentVector<>(0, BITS, EMPTY_NODE, new Object[0]);
+    
+    private final int size;
+    // the bit position of the top level of the tree, 5 for a tree with only one level above the leaves
+    private final int shift;
+    private final Node root;
+    // holds exactly the elements after tailOffset(), it's never changed either, append() copies it
+    private final Object[] tail;
+    
+    private MyPersistentVector(int size, int shift, Node root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+    
+    /** Returns: The empty vector */
+    @SuppressWarnings("unchecked") // safe, an empty vector holds no elements of any type
+    public static <E> MyPersistentVector<E> empty() {
+        return (MyPersistentVector<E>) EMPTY;
+    }
+    
+    /** Returns: A vector with the provided elements, in order */
+    @SafeVarargs
+    public static <E> MyPersistentVector<E> of(E... elements) {
+        Builder<E> builder = builder();
+        for (E e : elements)
+            builder.add(e);
+        return builder.build();
+    }
+    
+    /** Returns: A vector with the elements of the provided list (or any other Iterable), in order
+     * (this is the one O(n) copy needed to switch from a MyGenericArrayList) */
+    public static <E> MyPersistentVector<E> copyOf(Iterable<? extends E> elements) {
+        Builder<E> builder = builder();
+        for (E e : elements)
+            builder.add(e);
+        return builder.build();
+    }
+    
+    /** Returns: A new empty Builder */
+    public static <E> Builder<E> builder() {
+        return new Builder<>(MyPersistentVector.<E>empty());
+    }
+    
+    /** Returns: A Builder that starts with the elements of this vector, in O(1) (this vector is not changed by it) */
+    public Builder<E> toBuilder() {
+        return new Builder<>(this);
+    }
+    
+    //index of the first element in the tail
+    private static int tailOffset(int size) {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+    
+    /** Returns: The array that holds element i, either the tail or a leaf of the tree */
+    private static Object[] arrayFor(int i, int size, int shift, Node root, Object[] tail) {
+        if (i >= tailOffset(size))
+            return tail;
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS)
+            node = (Node) node.array[(i >>> level) & MASK];
+        return node.array;
+    }
+    
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException
+                    ("Index: " + index + ", Size: " + size);
+    }
+    
+    /** Returns: The element at the specified index */
+    //Runtime complexity: O(log32 n)
+    @SuppressWarnings("unchecked") // safe, the arrays only ever receive elements of type E
+    public E get(int index) {
+        checkIndex(index, size);
+        return (E) arrayFor(index, size, shift, root, tail)[index & MASK];
+    }
+    
+    /** Returns: A new vector with the specified element at the end */
+    //Runtime complexity: O(log32 n), O(1) for 31 out of 32 appends, which only copy the tail
+    public MyPersistentVector<E> append(E e) {
+        int tailLength = size - tailOffset(size);
+        if (tailLength < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tailLength + 1);
+            newTail[tailLength] = e;
+            return new MyPersistentVector<>(size + 1, shift, root, newTail);
+        }
+        //the tail is full, it becomes a leaf of the tree and a new tail is started
+        Node tailNode = new Node(null, tail);
+        Node newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            //the tree is full, it gets a new level on top
+            newRoot = new Node(null, new Object[WIDTH]);
+            newRoot.array[0] = root;
+            newRoot.array[1] = newPath(null, shift, tailNode);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(null, size, shift, root, tailNode);
+        }
+        return new MyPersistentVector<>(size + 1, newShift, newRoot, new Object[]{e});
+    }
+    
+    /** Returns: A copy of the parent, with the tail node added as its last leaf (copying every node on the way) */
+    private static Node pushTail(Object owner, int size, int level, Node parent, Node tailNode) {
+        int childIndex = ((size - 1) >>> level) & MASK;
+        Node result = editable(owner, parent);
+        Node toInsert;
+        if (level == BITS) {
+            toInsert = tailNode;
+        } else {
+            Node child = (Node) parent.array[childIndex];
+            toInsert = child != null
+                    ? pushTail(owner, size, level - BITS, child, tailNode)
+                    : newPath(owner, level - BITS, tailNode);
+        }
+        result.array[childIndex] = toInsert;
+        return result;
+    }
+    
+    /** Returns: A chain of new nodes from the specified level down to the provided node */
+    private static Node newPath(Object owner, int level, Node node) {
+        if (level == 0)
+            return node;
+        Node path = new Node(owner, new Object[WIDTH]);
+        path.array[0] = newPath(owner, level - BITS, node);
+        return path;
+    }
+    
+    /** Returns: The node itself if the owner may change it, otherwise a copy that belongs to the owner
+     * (with a null owner, which is how persistent vectors change things, it's always a copy) */
+    private static Node editable(Object owner, Node node) {
+        if (owner != null && node.owner == owner)
+            return node;
+        return new Node(owner, node.array.clone());
+    }
+    
+    /** Returns: A new vector with the element at the specified index replaced by the specified element */
+    //Runtime complexity: O(log32 n)
+    public MyPersistentVector<E> set(int index, E e) {
+        checkIndex(index, size);
+        if (index >= tailOffset(size)) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = e;
+            return new MyPersistentVector<>(size, shift, root, newTail);
+        }
+        return new MyPersistentVector<>(size, shift, setInTree(null, shift, root, index, e), tail);
+    }
+    
+    private static Node setInTree(Object owner, int level, Node node, int index, Object e) {
+        Node result = editable(owner, node);
+        if (level == 0) {
+            result.array[index & MASK] = e;
+        } else {
+            int childIndex = (index >>> level) & MASK;
+            result.array[childIndex] = setInTree(owner, level - BITS, (Node) node.array[childIndex], index, e);
+        }
+        return result;
+    }
+    
+    /** Returns: A new vector without the last element
+     * Throws: NoSuchElementException if the vector is empty */
+    //Runtime complexity: O(log32 n)
+    public MyPersistentVector<E> removeLast() {
+        if (size == 0)
+            throw new NoSuchElementException("Vector is empty");
+        if (size == 1)
+            return empty();
+        if (size - tailOffset(size) > 1)
+            return new MyPersistentVector<>(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        //the tail would become empty, the last leaf of the tree becomes the new tail
+        Object[] newTail = arrayFor(size - 2, size, shift, root, tail);
+        Node newRoot = popTail(shift, root);
+        int newShift = shift;
+        if (newRoot == null)
+            newRoot = EMPTY_NODE;
+        if (shift > BITS && newRoot.array[1] == null) {
+            //only one child left at the top, the tree loses a level
+            newRoot = (Node) newRoot.array[0];
+            newShift -= BITS;
+        }
+        return new MyPersistentVector<>(size - 1, newShift, newRoot, newTail);
+    }
+    
+    /** Returns: A copy of the node without its last leaf, or null if nothing would be left in it */
+    private Node popTail(int level, Node node) {
+        int childIndex = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Node newChild = popTail(level - BITS, (Node) node.array[childIndex]);
+            if (newChild == null && childIndex == 0)
+                return null;
+            Node result = editable(null, node);
+            result.array[childIndex] = newChild;
+            return result;
+        }
+        if (childIndex == 0)
+            return null;
+        Node result = editable(null, node);
+        result.array[childIndex] = null;
+        return result;
+    }
+    
+    /** Returns: Count of elements in the vector */
+    public int size() {
+        return size;
+    }
+    
+    /** Returns: true if the vector has no elements */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    @Override
+    public Iterator<E> iterator() {
+        return new MyPersistentVectorIterator();
+    }
+    
+    //walks the vector one leaf at a time, so each element costs O(1) instead of a get() from the top of the tree
+    private class MyPersistentVectorIterator implements Iterator<E> {
+        
+        private int currentIndex = 0;
+        private Object[] leaf;
+        
+        @Override
+        public boolean hasNext() {
+            return currentIndex < size;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (currentIndex >= size)
+                throw new NoSuchElementException();
+            if ((currentIndex & MASK) == 0)
+                leaf = arrayFor(currentIndex, size, shift, root, tail);
+            return (E) leaf[currentIndex++ & MASK];
+        }
+    }
+    
+    /** Returns: A spliterator over the elements, the vector can't change so it's IMMUTABLE */
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(iterator(), size,
+                Spliterator.ORDERED | Spliterator.IMMUTABLE);
+    }
+    
+    /** Returns: A sequential stream of the elements */
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    
+    /** Returns: A parallel stream of the elements */
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+    
+    /** Two vectors are equal if they have equal elements in the same order */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof MyPersistentVector))
+            return false;
+        MyPersistentVector<?> other = (MyPersistentVector<?>) o;
+        if (other.size != size)
+            return false;
+        Iterator<?> otherElements = other.iterator();
+        for (E e : this)
+            if (!Objects.equals(e, otherElements.next()))
+                return false;
+        return true;
+    }
+    
+    @Override
+    public int hashCode() {
+        //same formula as java.util.List
+        int hash = 1;
+        for (E e : this)
+            hash = 31 * hash + Objects.hashCode(e);
+        return hash;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        
+        for (E e : this) {
+            sb.append(e);
+            sb.append(", ");
+        }
+        //delete the comma and space after the last element
+        if (sb.length() > 2) {
+            sb.deleteCharAt(sb.length() - 1);
+            sb.deleteCharAt(sb.length() - 1);
+        }
+        
+        sb.append("]");
+        return sb.toString();
+    }
+    
+    /**
+     * A mutable version of the vector for making many changes quickly (a "transient" vector).
+     * It changes the nodes it created itself in place instead of copying them, so adding n elements costs O(n)
+     * instead of O(n log32 n) with a lot of garbage. build() returns a persistent snapshot in O(1),
+     * after which the Builder can keep going: it then copies a node before its first change to it, so the snapshot never sees a change.
+     * A Builder is not thread safe, it should be used by one (writer) thread, the snapshots it returns can be read by any thread.
+     */
+    public static final class Builder<E> {
+        //Nodes whose owner is this token may be changed in place. build() replaces it with a new token,
+        // so every node that is shared with the snapshot belongs to nobody any more and is copied before it's changed
+        private Object owner = new Object();
+        private int size;
+        private int shift;
+        private Node root;
+        // always WIDTH long, unlike the tail of a persistent vector, the elements after tailOffset() are at the start
+        private Object[] tail;
+        
+        private Builder(MyPersistentVector<E> vector) {
+            this.size = vector.size;
+            this.shift = vector.shift;
+            this.root = vector.root;
+            this.tail = Arrays.copyOf(vector.tail, WIDTH);
+        }
+        
+        /** Adds a new element to the end */
+        //Runtime complexity: O(1) (Amortized)
+        public Builder<E> add(E e) {
+            int tailLength = size - tailOffset(size);
+            if (tailLength < WIDTH) {
+                tail[tailLength] = e;
+                size++;
+                return this;
+            }
+            Node tailNode = new Node(owner, tail);
+            tail = new Object[WIDTH];
+            tail[0] = e;
+            if ((size >>> BITS) > (1 << shift)) {
+                Node newRoot = new Node(owner, new Object[WIDTH]);
+                newRoot.array[0] = root;
+                newRoot.array[1] = newPath(owner, shift, tailNode);
+                root = newRoot;
+                shift += BITS;
+            } else {
+                root = pushTail(owner, size, shift, root, tailNode);
+            }
+            size++;
+            return this;
+        }
+        
+        /** Replaces the element at the specified index with the specified element */
+        //Runtime complexity: O(log32 n), without copying the nodes that this Builder already owns
+        public Builder<E> set(int index, E e) {
+            checkIndex(index, size);
+            if (index >= tailOffset(size))
+                tail[index & MASK] = e;
+            else
+                root = setInTree(owner, shift, root, index, e);
+            return this;
+        }
+        
+        /** Returns: The element at the specified index */
+        @SuppressWarnings("unchecked") // safe, the arrays only ever receive elements of type E
+        public E get(int index) {
+            checkIndex(index, size);
+            return (E) arrayFor(index, size, shift, root, tail)[index & MASK];
+        }
+        
+        /** Returns: Count of elements added so far */
+        public int size() {
+            return size;
+        }
+        
+        /** Returns: A persistent vector with the current elements, in O(1) (only the tail of at most 32 elements is copied) */
+        public MyPersistentVector<E> build() {
+            //the snapshot shares the tree, so from now on this Builder must copy those nodes before changing them
+            owner = new Object();
+            return new MyPersistentVector<>(size, shift, root, Arrays.copyOf(tail, size - tailOffset(size)));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+package mydatastructures;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Snapshot of the resize counters of a MyGenericArrayList, taken by calling metrics() on the list
+ * Later resizes of the list are not reflected in it.
+ */
+public final class MyResizeMetrics {
+    
+    //the array holds references, with compressed references (the default for heaps below 32 GB) each one is 4 bytes
+    private static final int REFERENCE_BYTES = 4;
+    
+    private final int capacity;
+    private final int size;
+    private final int peakCapacity;
+    private final long resizeCount;
+    private final long elementsCopied;
+    
+    MyResizeMetrics(int capacity, int size, int peakCapacity, long resizeCount, long elementsCopied) {
+        this.capacity = capacity;
+        this.size = size;
+        this.peakCapacity = peakCapacity;
+        this.resizeCount = resizeCount;
+        this.elementsCopied = elementsCopied;
+    }
+    
+    /**
+     * Returns: The length of the internal array
+     */
+    public int capacity() {
+        return capacity;
+    }
+    
+    /**
+     * Returns: The number of elements in the list
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns: The largest the internal array has ever been
+     */
+    public int peakCapacity() {
+        return peakCapacity;
+    }
+    
+    /**
+     * Returns: How many times the internal array was replaced by a larger (or, by trimToSize(), a smaller) one
+     */
+    public long resizeCount() {
+        return resizeCount;
+    }
+    
+    /**
+     * Returns: The total number of elements copied from an old array into a new one
+     */
+    public long elementsCopied() {
+        return elementsCopied;
+    }
+    
+    /**
+     * Returns: The approximate number of bytes copied by the resizes (4 bytes per element, see REFERENCE_BYTES)
+     */
+    public long bytesCopied() {
+        return elementsCopied * REFERENCE_BYTES;
+    }
+    
+    /**
+     * Returns: All values of this snapshot under flat names, in a fixed order (handy for exporting them as metrics)
+     */
+    public Map<String, Number> asMap() {
+        Map<String, Number> map = new LinkedHashMap<>();
+        map.put("capacity", capacity);
+        map.put("size", size);
+        map.put("peakCapacity", peakCapacity);
+        map.put("resizeCount", resizeCount);
+        map.put("elementsCopied", elementsCopied);
+        map.put("bytesCopied", bytesCopied());
+        return map;
+    }
+    
+    @Override
+    public String toString() {
+        return "MyResizeMetrics" + asMap();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,275 @@
+package mydatastructures;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Storage engine used by MyGenericHashSet when it is created in grouped probing mode (a so called Swiss table).
+ * Next to the elements the table keeps one control byte per slot, which either holds 7 bits of the element's hash (a tag)
+ * or marks the slot as empty or deleted. Slots are probed in groups of 16,
+ * a lookup compares its tag with all 16 control bytes of a group at once and calls equals() only on the slots whose tag matches,
+ * so a lookup rarely needs more than one equals() call (and usually none at all for an element that is not in the set).
+ */
+//Package-private, same as MyOpenAddressingTable, the client only talks to MyGenericHashSet.
+//The control bytes are compared with plain long arithmetic, 8 bytes per long (SWAR - SIMD within a register),
+// so it works the same on every JVM, no incubator modules (like jdk.incubator.vector) are needed
+class MySwissTable<E> {
+    
+    static final int GROUP_SIZE = 16;
+    private static final int MAX_CAP = 1 << 30;
+    //a group without an empty slot makes lookups move on to the next group, so the table is never filled completely
+    private static final float MAX_LOAD_FACTOR = 0.875f;
+    
+    //A full slot holds its tag (0x00 - 0x7F) so the highest bit of a control byte is only set for empty and deleted slots
+    private static final byte EMPTY = (byte) 0x80;
+    private static final byte DELETED = (byte) 0xFE;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    
+    // 8 control bytes per long, the control byte of slot i is in control[i >>> 3] at bits (i & 7) * 8,
+    // so group g is made of control[2 * g] and control[2 * g + 1]
+    private long[] control;
+    private Object[] elements;
+    //capacity is a power of two (and at least one group), (number of groups - 1) is used as a bit mask
+    private int groupMask;
+    private int size = 0;
+    //deleted slots don't stop a lookup, so until the next rehash they are counted toward the load of the table
+    private int deleted = 0;
+    private int resizeThreshold;
+    private final float loadFactorLimit;
+    
+    //set by MyGenericHashSet when statistics are enabled (null otherwise)
+    MyHashStatistics.Counters counters;
+    
+    /**
+     * Constructs a table with at least the provided capacity (rounded up to a power of two, and to at least one group)
+     */
+    MySwissTable(int initialCapacity, float loadFactorLimit) {
+        this.loadFactorLimit = Math.min(loadFactorLimit, MAX_LOAD_FACTOR);
+        allocate(Math.max(GROUP_SIZE, MyOpenAddressingTable.tableSizeFor(initialCapacity)));
+    }
+    
+    private void allocate(int capacity) {
+        control = new long[capacity >>> 3];
+        Arrays.fill(control, HIGH_BITS); // every byte 0x80, all slots empty
+        elements = new Object[capacity];
+        groupMask = capacity / GROUP_SIZE - 1;
+        deleted = 0;
+        //make sure at least one slot always stays empty, so every probe sequence ends
+        resizeThreshold = Math.min((int) (capacity * loadFactorLimit), capacity - 1);
+    }
+    
+    /**
+     * Returns: A mask with the highest bit set in every byte of the word that is equal to the tag (repeated in every byte of tagBytes)
+     */
+    //A byte of (word ^ tagBytes) is zero where the tag matches, and subtracting 1 from a zero byte is the only way
+    // to set its highest bit when it wasn't set before.
+    //The borrow can also mark the byte right above a match, but only if that slot is full,
+    // so the occasional false positive just costs one equals() call
+    private static long matchTag(long word, long tagBytes) {
+        long x = word ^ tagBytes;
+        return (x - LOW_BITS) & ~x & HIGH_BITS;
+    }
+    
+    /**
+     * Returns: A mask with the highest bit set in every byte of the word that marks an empty slot
+     */
+    //EMPTY is the only control byte with the highest bit set and the bit below it clear
+    private static long matchEmpty(long word) {
+        return word & ~(word << 1) & HIGH_BITS;
+    }
+    
+    private byte controlAt(int slot) {
+        return (byte) (control[slot >>> 3] >>> ((slot & 7) << 3));
+    }
+    
+    private void setControl(int slot, byte value) {
+        int shift = (slot & 7) << 3;
+        control[slot >>> 3] = (control[slot >>> 3] & ~(0xFFL << shift)) | ((value & 0xFFL) << shift);
+    }
+    
+    /**
+     * Returns: The index of the slot that holds the element, or -1 if the element is not in the table
+     */
+    //Groups are visited in triangular order (home, +1, +3, +6...), with a power of two number of groups
+    // that sequence visits every group exactly once
+    private int findSlot(Object e, int hash) {
+        long tagBytes = LOW_BITS * (hash & 0x7F);
+        int group = (hash >>> 7) & groupMask;
+        for (int step = 1; ; step++) {
+            int word = group << 1;
+            for (int i = word; i < word + 2; i++) {
+                for (long match = matchTag(control[i], tagBytes); match != 0; match &= match - 1) {
+                    int slot = (i << 3) + (Long.numberOfTrailingZeros(match) >>> 3);
+                    Object current = elements[slot];
+                    if (current == e || current.equals(e))
+                        return slot;
+                }
+            }
+            //if this group has an empty slot the element would have been added here, no need to look further
+            if ((matchEmpty(control[word]) | matchEmpty(control[word + 1])) != 0)
+                return -1;
+            group = (group + step) & groupMask;
+        }
+    }
+    
+    /**
+     * Returns: The first empty or deleted slot in the probe sequence of the hash
+     */
+    private int findFreeSlot(int hash) {
+        int group = (hash >>> 7) & groupMask;
+        for (int step = 1; ; step++) {
+            int word = group << 1;
+            for (int i = word; i < word + 2; i++) {
+                long free = control[i] & HIGH_BITS;
+                if (free != 0)
+                    return (i << 3) + (Long.numberOfTrailingZeros(free) >>> 3);
+            }
+            group = (group + step) & groupMask;
+        }
+    }
+    
+    private static int hash(Object e) {
+        Objects.requireNonNull(e, "Grouped probing mode does not support null elements");
+        return MyOpenAddressingTable.spread(e.hashCode());
+    }
+    
+    boolean contains(Object e) {
+        return findSlot(e, hash(e)) >= 0;
+    }
+    
+    /**
+     * Adds the element into the table
+     * Returns: false if the element was already in the table
+     */
+    boolean add(E e) {
+        int hash = hash(e);
+        if (findSlot(e, hash) >= 0)
+            return false;
+        
+        if (size + deleted >= resizeThreshold) {
+            //mostly deleted slots, rebuilding the table at the same size is enough to get rid of them
+            if (size < resizeThreshold / 2)
+                rehash(elements.length);
+            else if (elements.length == MAX_CAP)
+                throw new RuntimeException("Maximum capacity reached");
+            else
+                rehash(elements.length << 1);
+        }
+        
+        int slot = findFreeSlot(hash);
+        if (controlAt(slot) == DELETED)
+            deleted--;
+        setControl(slot, (byte) (hash & 0x7F));
+        elements[slot] = e;
+        size++;
+        return true;
+    }
+    
+    /**
+     * Removes the element from the table
+     * Returns: false if the element was not in the table
+     */
+    boolean remove(Object e) {
+        int slot = findSlot(e, hash(e));
+        if (slot < 0)
+            return false;
+        removeAt(slot);
+        return true;
+    }
+    
+    void removeAt(int slot) {
+        elements[slot] = null;
+        size--;
+        //A lookup only stops in a group that has an empty slot, if this group already has one
+        // no lookup can go past it, so the slot can simply be marked as empty.
+        // Otherwise a lookup might need to continue past this group, and the slot is marked as deleted instead
+        int word = (slot >>> 4) << 1;
+        if ((matchEmpty(control[word]) | matchEmpty(control[word + 1])) != 0) {
+            setControl(slot, EMPTY);
+        } else {
+            setControl(slot, DELETED);
+            deleted++;
+        }
+    }
+    
+    void clear() {
+        Arrays.fill(control, HIGH_BITS);
+        Arrays.fill(elements, null);
+        size = 0;
+        deleted = 0;
+    }
+    
+    /**
+     * Makes sure the table can hold the specified number of elements without resizing again
+     */
+    void ensureCapacity(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / (double) loadFactorLimit) + 1;
+        int capacity = Math.max(GROUP_SIZE, MyOpenAddressingTable.tableSizeFor((int) Math.min(needed, MAX_CAP)));
+        if (capacity > elements.length)
+            rehash(capacity);
+    }
+    
+    /**
+     * Moves every element into a new table of the provided capacity, deleted slots are dropped along the way
+     */
+    //Runtime complexity: O(n), the new table can't contain duplicates so no equals() calls are needed
+    private void rehash(int newCapacity) {
+        long start = counters != null ? System.nanoTime() : 0;
+        Object[] oldElements = elements;
+        allocate(newCapacity);
+        
+        for (Object e : oldElements) {
+            if (e != null) {
+                int hash = MyOpenAddressingTable.spread(e.hashCode());
+                int slot = findFreeSlot(hash);
+                setControl(slot, (byte) (hash & 0x7F));
+                elements[slot] = e;
+            }
+        }
+        
+        if (counters != null) {
+            counters.rehashes++;
+            counters.rehashNanos += System.nanoTime() - start;
+        }
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Returns: Number of slots in the table, used together with elementAt() to go through all elements
+     */
+    int capacity() {
+        return elements.length;
+    }
+    
+    /**
+     * Returns: The element in the specified slot, or null if the slot is empty
+     */
+    @SuppressWarnings("unchecked") // safe, elements[] only ever receives elements of type E through add()
+    E elementAt(int slot) {
+        return (E) elements[slot];
+    }
+    
+    /**
+     * Returns: The probe length distribution, element i is the number of elements that are found in the i-th group probed
+     */
+    long[] probeLengthHistogram() {
+        long[] histogram = new long[2];
+        for (int slot = 0; slot < elements.length; slot++) {
+            Object e = elements[slot];
+            if (e == null)
+                continue;
+            int group = (MyOpenAddressingTable.spread(e.hashCode()) >>> 7) & groupMask;
+            int probes = 1;
+            for (int step = 1; group != slot / GROUP_SIZE; step++, probes++)
+                group = (group + step) & groupMask;
+            if (probes >= histogram.length)
+                histogram = Arrays.copyOf(histogram, Math.max(probes + 1, histogram.length << 1));
+            histogram[probes]++;
+        }
+        return histogram;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package mydatastructures;
+
+/**
+ * An AVL tree index over the entries of one overloaded hash bucket, used by MyGenericHashMap and MyGenericHashSet
+ * Entries are ordered by their hash code first, and then by their key (see compare()),
+ * so looking up a key in a bucket with n entries takes O(log n) steps instead of O(n).
+ */
+//The bucket keeps its linked list as well (iteration, resizing etc. still walk the list),
+// the tree is only there to make lookups fast when a lot of keys end up in the same bucket.
+//With a good hash function that basically never happens, but the hash function in these maps is very basic
+// and keys could also be picked on purpose (for example from untrusted input) so they all land in one bucket.
+class MyTreeBucket<T extends Comparable<T>> extends MyGenericTreeAVL<T> {
+    
+    // a bucket is turned into a tree once it holds this many entries...
+    static final int TREEIFY_THRESHOLD = 8;
+    // ...and turned back into a plain list once it shrinks to this many
+    // (the gap keeps a bucket from switching back and forth when a key is added and removed repeatedly)
+    static final int UNTREEIFY_THRESHOLD = 6;
+    // while the table is small, a long bucket is more likely caused by the table being too small than by bad keys,
+    // and the table will grow soon anyway, so buckets are not turned into trees before the table reaches this size
+    static final int MIN_TREEIFY_CAPACITY = 64;
+    
+    //The tree doesn't accept two entries that compare as equal, and entries with different keys can still compare
+    // as equal in a rare case (same hash code, keys not Comparable and same identity hash code).
+    //Such an entry is kept only in the bucket's list, and lookups in this bucket have to go through the list instead.
+    boolean incomplete = false;
+    
+    /**
+     * Adds an entry to the tree, marks the tree as incomplete if the entry could not be added
+     */
+    void insertEntry(T entry) {
+        if (!insert(entry))
+            incomplete = true;
+    }
+    
+    /**
+     * Order of the entries in the tree
+     * Returns: negative, 0 or positive value if the first entry goes before, on the same place as or after the second
+     */
+    static int compare(int hashCode1, Object key1, int hashCode2, Object key2) {
+        if (hashCode1 != hashCode2)
+            return hashCode1 < hashCode2 ? -1 : 1;
+        int order = compareKeys(key1, key2);
+        if (order != 0)
+            return order;
+        
+        //keys have no order of their own, any consistent order is fine for building the tree
+        // (a lookup can't rely on it, see compareKeys())
+        if (key1 == key2)
+            return 0;
+        if (key1 == null)
+            return -1;
+        if (key2 == null)
+            return 1;
+        order = key1.getClass().getName().compareTo(key2.getClass().getName());
+        if (order != 0)
+            return order;
+        return Integer.compare(System.identityHashCode(key1), System.identityHashCode(key2));
+    }
+    
+    /**
+     * Compares two keys using their natural order
+     * Returns: 0 if keys are equal by that order or if the keys can't be compared,
+     * a lookup then has to search both subtrees of the current tree node
+     */
+    @SuppressWarnings("unchecked")
+    static int compareKeys(Object key1, Object key2) {
+        //only keys of the same class are compared, that's enough for the common cases (String, Integer...)
+        if (key1 == null || key2 == null || key1.getClass() != key2.getClass() || !(key1 instanceof Comparable))
+            return 0;
+        return ((Comparable<Object>) key1).compareTo(key2);
+    }
+}
\ No newline at end of file